@@ -0,0 +1,33 @@
+package org.grupo1.markapbe.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@EnableCaching
+@Configuration
+public class CacheConfig {
+
+    public static final String CATEGORIAS = "categorias";
+    public static final String DETALLE_PRODUCTO = "detalle-producto";
+    public static final String SNAPSHOTS_CATALOGO = "snapshots-catalogo";
+
+    // Las escrituras de ProductService invalidan explicitamente; el TTL solo acota cuanto puede vivir algo que se escape
+    @Bean
+    public CacheManager cacheManager(@Value("${catalogo.cache.max-entradas:100}") long maxEntradas,
+                                     @Value("${catalogo.cache.ttl:10m}") Duration ttl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(CATEGORIAS);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(ttl)
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+}
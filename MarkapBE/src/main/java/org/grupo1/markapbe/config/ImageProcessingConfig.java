@@ -0,0 +1,24 @@
+package org.grupo1.markapbe.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ImageProcessingConfig {
+
+    // Pool acotado: si la cola se llena la tarea se rechaza y la variante se genera la proxima vez que se pida
+    @Bean
+    public ThreadPoolTaskExecutor imageProcessingExecutor(@Value("${storage.images.workers:2}") int workers,
+                                                          @Value("${storage.images.queue-capacity:100}") int capacidadCola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(capacidadCola);
+        executor.setThreadNamePrefix("imagenes-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
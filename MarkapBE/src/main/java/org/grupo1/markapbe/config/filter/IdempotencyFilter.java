@@ -0,0 +1,168 @@
+package org.grupo1.markapbe.config.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.grupo1.markapbe.controller.dto.ErrorResponseDTO;
+import org.grupo1.markapbe.service.carrito.IdempotencyStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency-Key en las escrituras del carrito: la primera peticion con una clave se ejecuta y su respuesta se
+ * guarda en el {@link IdempotencyStore}; un reintento con la misma clave recibe esa respuesta (con el header
+ * Idempotent-Replayed) sin volver a ejecutar nada. Un reintento que llega mientras la primera sigue en curso la espera.
+ * <p>
+ * Las claves son por usuario. Las respuestas 5xx, 429 y 409 y las excepciones no se guardan: son estados pasajeros
+ * (la cola de checkout llena, una peticion en curso) y el reintento se vuelve a ejecutar. Con la respuesta se guardan
+ * los headers que el cliente necesita para seguir (Location del ticket, Retry-After, ETag...).
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String HEADER_REPETIDA = "Idempotent-Replayed";
+
+    private static final int MAX_LARGO_CLAVE = 255;
+
+    private static final List<String> HEADERS_GUARDADOS = List.of(HttpHeaders.LOCATION, HttpHeaders.RETRY_AFTER,
+            HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LANGUAGE, HttpHeaders.CACHE_CONTROL, HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED, HttpHeaders.VARY);
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final Duration espera;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore, ObjectMapper objectMapper, Duration espera) {
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.espera = espera;
+    }
+
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String metodo = request.getMethod();
+        return request.getHeader(HEADER) == null
+                || HttpMethod.GET.matches(metodo) || HttpMethod.HEAD.matches(metodo) || HttpMethod.OPTIONS.matches(metodo)
+                || !request.getRequestURI().startsWith(request.getContextPath() + "/carrito/");
+    }
+
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            // sin usuario la peticion termina en 401 mas adelante: no hay nada que guardar
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String clave = request.getHeader(HEADER).trim();
+        if (clave.isEmpty() || clave.length() > MAX_LARGO_CLAVE) {
+            error(response, HttpStatus.BAD_REQUEST, "El header " + HEADER + " debe tener entre 1 y " + MAX_LARGO_CLAVE + " caracteres.");
+            return;
+        }
+
+        IdempotencyStore.Clave id = new IdempotencyStore.Clave(authentication.getName(), clave);
+        String huella = request.getMethod() + " " + request.getRequestURI()
+                + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+        while (true) {
+            IdempotencyStore.Ejecucion nueva = new IdempotencyStore.Ejecucion(huella);
+            IdempotencyStore.Ejecucion previa = idempotencyStore.registrar(id, nueva);
+            if (previa == null) {
+                ejecutar(request, response, filterChain, id, nueva);
+                return;
+            }
+            if (!previa.huella().equals(huella)) {
+                error(response, HttpStatus.UNPROCESSABLE_ENTITY, "La " + HEADER + " ya se uso con otra peticion.");
+                return;
+            }
+            IdempotencyStore.Respuesta guardada;
+            try {
+                guardada = previa.respuesta().get(espera.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                error(response, HttpStatus.CONFLICT, "Hay una peticion con la misma " + HEADER + " en curso.");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error(response, HttpStatus.CONFLICT, "Hay una peticion con la misma " + HEADER + " en curso.");
+                return;
+            } catch (ExecutionException e) {
+                throw new ServletException(e.getCause());
+            }
+            if (guardada != null) {
+                repetir(response, guardada);
+                return;
+            }
+            // la primera no termino bien: este reintento se ejecuta
+        }
+    }
+
+
+    private void ejecutar(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                          IdempotencyStore.Clave id, IdempotencyStore.Ejecucion ejecucion) throws ServletException, IOException {
+        ContentCachingResponseWrapper envoltorio = new ContentCachingResponseWrapper(response);
+        boolean guardada = false;
+        try {
+            filterChain.doFilter(request, envoltorio);
+            if (guardable(envoltorio.getStatus()) && !request.isAsyncStarted()) {
+                Map<String, List<String>> headers = new LinkedHashMap<>();
+                for (String header : HEADERS_GUARDADOS) {
+                    if (envoltorio.containsHeader(header)) {
+                        headers.put(header, List.copyOf(envoltorio.getHeaders(header)));
+                    }
+                }
+                idempotencyStore.completar(ejecucion, new IdempotencyStore.Respuesta(envoltorio.getStatus(),
+                        envoltorio.getContentType(), headers, envoltorio.getContentAsByteArray()));
+                guardada = true;
+            }
+        } finally {
+            if (!guardada) {
+                idempotencyStore.descartar(id, ejecucion);
+            }
+            envoltorio.copyBodyToResponse();
+        }
+    }
+
+
+    private static boolean guardable(int status) {
+        return status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value() && status != HttpStatus.CONFLICT.value();
+    }
+
+
+    private void repetir(HttpServletResponse response, IdempotencyStore.Respuesta guardada) throws IOException {
+        response.setStatus(guardada.status());
+        if (guardada.contentType() != null) {
+            response.setContentType(guardada.contentType());
+        }
+        guardada.headers().forEach((header, valores) -> valores.forEach(valor -> response.addHeader(header, valor)));
+        response.setHeader(HEADER_REPETIDA, "true");
+        response.setContentLength(guardada.cuerpo().length);
+        response.getOutputStream().write(guardada.cuerpo());
+    }
+
+
+    private void error(HttpServletResponse response, HttpStatus status, String mensaje) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponseDTO(mensaje));
+    }
+}
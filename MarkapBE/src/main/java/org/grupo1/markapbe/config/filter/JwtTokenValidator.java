@@ -29,6 +29,14 @@ public class JwtTokenValidator extends OncePerRequestFilter {
     }
 
 
+    // Las respuestas asincronicas (DeferredResult) vuelven a pasar por los filtros en otro dispatch: sin sesion, el
+    // usuario se vuelve a leer del token
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,@NonNull HttpServletResponse response,@NonNull FilterChain filterChain) throws ServletException, IOException {
         String jwtToken = request.getHeader(HttpHeaders.AUTHORIZATION);
@@ -0,0 +1,37 @@
+package org.grupo1.markapbe.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.grupo1.markapbe.controller.dto.CacheStatsDTO;
+import org.grupo1.markapbe.service.CacheStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheController {
+
+    @Autowired
+    private CacheStatsService cacheStatsService;
+
+    @Operation(summary = "Estadísticas de las caches del catálogo",
+            description = "Devuelve hits, misses, tasa de aciertos, desalojos y tamaño de cada cache en memoria.",
+            security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estadísticas devueltas con éxito."),
+            @ApiResponse(responseCode = "403", description = "El usuario no tiene el rol ADMIN.")
+    })
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<CacheStatsDTO>> getEstadisticas() {
+        return ResponseEntity.ok(cacheStatsService.getEstadisticas());
+    }
+}
@@ -1,20 +1,34 @@
 package org.grupo1.markapbe.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.grupo1.markapbe.controller.dto.CarritoDTO.CarritoDTO;
+import org.grupo1.markapbe.controller.dto.CarritoDTO.CarritoResumenDTO;
+import org.grupo1.markapbe.controller.dto.CarritoDTO.CheckoutTicketDTO;
 import org.grupo1.markapbe.controller.dto.CarritoDTO.ItemsCarritoDTO;
 import org.grupo1.markapbe.controller.dto.ErrorResponseDTO;
+import jakarta.persistence.EntityNotFoundException;
 import org.grupo1.markapbe.service.CarritoService;
+import org.grupo1.markapbe.service.pedido.CheckoutQueue;
+import org.grupo1.markapbe.service.pedido.PedidoCheckout;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.*;
 
 @RestController
@@ -24,6 +38,12 @@ public class CarritoController {
     @Autowired
     private CarritoService carritoService;
 
+    @Autowired
+    private CheckoutQueue checkoutQueue;
+
+    @Value("${checkout.espera:30s}")
+    private Duration esperaCheckout;
+
     @Operation(
             summary = "Obtener carrito activo",
             description = "Este endpoint devuelve el carrito activo del usuario autenticado. Si no existe un carrito activo, lanza una excepción.",security = @SecurityRequirement(name = "BearerAuth")
@@ -45,6 +65,20 @@ public class CarritoController {
         return ResponseEntity.ok(carritoDTO);
     }
 
+    @Operation(summary = "Obtener resumen del carrito activo",
+            description = "Devuelve la cantidad de productos, las unidades y el precio total del carrito activo sin leer sus items, para el contador del header. Si no hay carrito activo devuelve todo en cero.",security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Resumen del carrito devuelto correctamente",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CarritoResumenDTO.class))}),
+            @ApiResponse(responseCode = "401", description = "No autorizado",
+                    content = @Content)
+    })
+    @GetMapping("/actual/summary")
+    public ResponseEntity<?> getResumenCarritoActivo() {
+        return ResponseEntity.ok(carritoService.getResumenCarritoActivo());
+    }
+
     @Operation(summary = "Obtener todos los items del carrito activo",
             description = "Este endpoint retorna los items del carrito de compras activo del usuario logueado, paginados.",security = @SecurityRequirement(name = "BearerAuth"))
     @ApiResponses(value = {
@@ -72,8 +106,12 @@ public class CarritoController {
                     content = { @Content(mediaType = "application/json",
                             schema = @Schema(implementation = CarritoDTO.class))}),
             @ApiResponse(responseCode = "500", description = "Error al actualizar el estado del carrito",
+                    content = @Content),
+            @ApiResponse(responseCode = "422", description = "La Idempotency-Key ya se usó con otra petición.",
                     content = @Content)
     })
+    @Parameter(in = ParameterIn.HEADER, name = "Idempotency-Key", required = false,
+            description = "Clave opcional para reintentos: una petición repetida con la misma clave devuelve la respuesta original sin volver a ejecutarse.")
     @PutMapping("/actual/paid")
     public ResponseEntity<?> updateCarritoStatus() {
         Map<String, Object> response = new HashMap<>();
@@ -107,6 +145,22 @@ public class CarritoController {
         return ResponseEntity.ok(carrito);
     }
 
+    @Operation(summary = "Obtener historial de pedidos paginado",
+            description = "Devuelve los carritos pagados del usuario, del más reciente al más antiguo, con la cantidad de productos, unidades y el precio total de cada uno.",security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página del historial devuelta correctamente",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CarritoResumenDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Parámetros de paginación no válidos",
+                    content = @Content)
+    })
+    @GetMapping("/historial/resumen")
+    public ResponseEntity<?> getHistorialPaginado(@RequestParam(defaultValue = "0") int pagina,
+                                                  @RequestParam(defaultValue = "10") int size) {
+        Page<CarritoResumenDTO> historial = carritoService.getHistorialPaginado(pagina, size);
+        return ResponseEntity.ok(historial);
+    }
+
     @Operation(summary = "Obtener items de un carrito específico",
             description = "Este endpoint permite obtener todos los items de un carrito dado su ID, paginando los resultados.",security = @SecurityRequirement(name = "BearerAuth"))
     @ApiResponses(value = {
@@ -132,8 +186,11 @@ public class CarritoController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Producto añadido al carrito exitosamente."),
             @ApiResponse(responseCode = "400", description = "Error de entrada, como stock insuficiente o producto no encontrado."),
-            @ApiResponse(responseCode = "404", description = "Carrito no encontrado.")
+            @ApiResponse(responseCode = "404", description = "Carrito no encontrado."),
+            @ApiResponse(responseCode = "422", description = "La Idempotency-Key ya se usó con otra petición.")
     })
+    @Parameter(in = ParameterIn.HEADER, name = "Idempotency-Key", required = false,
+            description = "Clave opcional para reintentos: una petición repetida con la misma clave devuelve la respuesta original sin volver a ejecutarse.")
     @PutMapping("/add/{productId}")
     public ResponseEntity<?> addItem(@PathVariable Long productId,
                                      @RequestParam(defaultValue = "1") int amount) {
@@ -150,8 +207,11 @@ public class CarritoController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Producto eliminado del carrito exitosamente."),
             @ApiResponse(responseCode = "400", description = "Error de entrada, como cantidad insuficiente para eliminar o producto no encontrado."),
-            @ApiResponse(responseCode = "404", description = "Carrito no encontrado.")
+            @ApiResponse(responseCode = "404", description = "Carrito no encontrado."),
+            @ApiResponse(responseCode = "422", description = "La Idempotency-Key ya se usó con otra petición.")
     })
+    @Parameter(in = ParameterIn.HEADER, name = "Idempotency-Key", required = false,
+            description = "Clave opcional para reintentos: una petición repetida con la misma clave devuelve la respuesta original sin volver a ejecutarse.")
     @PutMapping("/remove/{productId}")
     public ResponseEntity<?> removeItem(@PathVariable Long productId,
                                         @RequestParam(defaultValue = "1") int amount) {
@@ -167,4 +227,73 @@ public class CarritoController {
         }
         return ResponseEntity.ok(response);
     }
+
+    @Operation(summary = "Encolar el checkout del carrito activo",
+            description = "Encola el pago del carrito activo y devuelve enseguida un ticket para consultar el resultado. Si el usuario ya tiene un checkout pendiente devuelve el mismo ticket. Si la cola de pedidos está llena responde 429 con el header Retry-After.",security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Checkout encolado",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CheckoutTicketDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Carrito no encontrado.",
+                    content = @Content),
+            @ApiResponse(responseCode = "429", description = "Cola de pedidos llena, reintentar después de Retry-After segundos.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponseDTO.class)))
+    })
+    @Parameter(in = ParameterIn.HEADER, name = "Idempotency-Key", required = false,
+            description = "Clave opcional para reintentos: una petición repetida con la misma clave devuelve la respuesta original sin volver a ejecutarse.")
+    @PostMapping("/actual/checkout")
+    public ResponseEntity<?> encolarCheckout() {
+        Optional<PedidoCheckout> pedido = checkoutQueue.encolar();
+        if (pedido.isEmpty()) {
+            long segundos = Math.max(1, checkoutQueue.getRetryAfter().toSeconds());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(segundos))
+                    .body(new ErrorResponseDTO("Hay demasiados pedidos en proceso, reintentar en " + segundos + " segundos."));
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/carrito/checkout/" + pedido.get().getTicket()))
+                .body(convertToDTO(pedido.get()));
+    }
+
+    @Operation(summary = "Consultar un checkout encolado",
+            description = "Devuelve el estado del pedido: PENDIENTE, CONFIRMADO o RECHAZADO.",security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del pedido",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CheckoutTicketDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Pedido no encontrado.",
+                    content = @Content)
+    })
+    @GetMapping("/checkout/{ticket}")
+    public ResponseEntity<?> getCheckout(@PathVariable String ticket, Principal principal) {
+        return ResponseEntity.ok(convertToDTO(buscarPedido(ticket, principal)));
+    }
+
+    @Operation(summary = "Esperar el resultado de un checkout encolado",
+            description = "Responde cuando el pedido se confirma o se rechaza, sin ocupar un hilo del servidor mientras espera. Si no termina dentro del tiempo de espera devuelve el estado PENDIENTE y se puede volver a consultar.",security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del pedido",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CheckoutTicketDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Pedido no encontrado.",
+                    content = @Content)
+    })
+    @GetMapping("/checkout/{ticket}/resultado")
+    public DeferredResult<ResponseEntity<CheckoutTicketDTO>> esperarCheckout(@PathVariable String ticket, Principal principal) {
+        PedidoCheckout pedido = buscarPedido(ticket, principal);
+        DeferredResult<ResponseEntity<CheckoutTicketDTO>> resultado = new DeferredResult<>(esperaCheckout.toMillis());
+        resultado.onTimeout(() -> resultado.setResult(ResponseEntity.ok(convertToDTO(pedido))));
+        pedido.resultado().thenAccept(terminado -> resultado.setResult(ResponseEntity.ok(convertToDTO(terminado))));
+        return resultado;
+    }
+
+    private PedidoCheckout buscarPedido(String ticket, Principal principal) {
+        return checkoutQueue.buscar(ticket, principal.getName())
+                .orElseThrow(() -> new EntityNotFoundException("Pedido no encontrado."));
+    }
+
+    private CheckoutTicketDTO convertToDTO(PedidoCheckout pedido) {
+        return new CheckoutTicketDTO(pedido.getTicket(), pedido.getEstado().name(), pedido.getCarritoId(), pedido.getMensaje());
+    }
 }
@@ -5,7 +5,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
-import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductCardDTO;
 import org.grupo1.markapbe.persistence.repository.UserRepository;
 import org.grupo1.markapbe.service.FavoriteProductService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,7 +46,7 @@ public class FavoriteProductsController {
     })
     @GetMapping("/")
     public ResponseEntity<?> conseguirFavoritos(Principal principal) {
-        List<ProductDTO> productos = productosFavoritoService.getLikes();
+        List<ProductCardDTO> productos = productosFavoritoService.getLikes();
         return new ResponseEntity<>(productos, HttpStatus.OK);
     }
 
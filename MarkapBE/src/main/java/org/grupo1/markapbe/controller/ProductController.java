@@ -1,30 +1,51 @@
 package org.grupo1.markapbe.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.grupo1.markapbe.controller.dto.CatalogoDTO.*;
+import org.grupo1.markapbe.persistence.projection.ProductSort;
 import org.grupo1.markapbe.persistence.repository.ProductRepository;
 import org.grupo1.markapbe.persistence.repository.UserRepository;
+import org.grupo1.markapbe.service.CatalogExportService;
+import org.grupo1.markapbe.service.CatalogSnapshots;
+import org.grupo1.markapbe.service.CatalogVersion;
+import org.grupo1.markapbe.service.ProductImageService;
+import org.grupo1.markapbe.service.ProductImportService;
 import org.grupo1.markapbe.service.ProductService;
 import org.grupo1.markapbe.service.UserService;
 import org.grupo1.markapbe.service.VisitedProductService;
+import org.grupo1.markapbe.service.storage.ImageVariant;
+import org.grupo1.markapbe.service.storage.StoredImage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/productos")
@@ -45,82 +66,243 @@ public class ProductController {
     @Autowired
     private VisitedProductService visitedProductService;
 
+    @Autowired
+    private ProductImageService productImageService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CatalogExportService catalogExportService;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
     @Operation(summary = "Obtener todos los productos",
             description = "Este endpoint devuelve una lista de todos los productos disponibles.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Lista de productos obtenida con éxito."),
+            @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag enviado."),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor.")
     })
     @GetMapping
-    public List<ProductResponseDTO> getAllProductos() {
-        return productoService.getAllProductos();
+    public ResponseEntity<List<ProductCardDTO>> getAllProductos(WebRequest request) {
+        return versionado(request, catalogVersion.conStock(), () -> productoService.getAllProductos());
+    }
+
+    @Operation(summary = "Exportar el catálogo completo",
+            description = "Devuelve todos los productos en formato NDJSON (un producto JSON por línea). La respuesta se escribe a medida que se leen los productos, sin armar el catálogo entero en memoria.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Catálogo exportado con éxito."),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor.")
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportarCatalogo() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(salida -> catalogExportService.exportar(salida));
     }
 
     @Operation(summary = "Obtener un producto por ID",
             description = "Este endpoint devuelve los detalles de un producto específico dado su ID.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Producto encontrado y devuelto con éxito."),
+            @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag enviado."),
             @ApiResponse(responseCode = "404", description = "No se encontró el producto con el ID especificado."),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor.")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponseDTO> getProductoById(@PathVariable Long id) {
+    public ResponseEntity<ProductResponseDTO> getProductoById(@PathVariable Long id, WebRequest request) {
+        // el ETag no depende de que el producto exista: sin este chequeo un id inexistente tambien responderia 304
+        if (!productoService.existeProducto(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        CatalogVersion.Version version = catalogVersion.conStockDeProducto(id);
+        if (request.checkNotModified(version.etag(), version.ultimaModificacion())) {
+            productoService.registrarVisita(id);
+            return null; // Spring responde 304 sin cuerpo
+        }
         Optional<ProductResponseDTO> producto = productoService.getProductoById(id);
-        return producto.map(ResponseEntity::ok)
+        return producto.map(p -> ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePublic()).body(p))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    @Operation(summary = "Consultar el stock disponible de un producto",
+            description = "Devuelve el stock, las unidades reservadas en carritos sin pagar y el disponible (stock menos reservado).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Disponibilidad devuelta con éxito."),
+            @ApiResponse(responseCode = "404", description = "No se encontró el producto con el ID especificado.")
+    })
+    @GetMapping("/{id}/disponibilidad")
+    public ResponseEntity<DisponibilidadDTO> getDisponibilidad(@PathVariable Long id) {
+        return productoService.getDisponibilidad(id)
+                .map(disponibilidad -> ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(disponibilidad))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Obtener la imagen de un producto",
+            description = "Este endpoint devuelve los bytes de la imagen del producto, opcionalmente en una variante (thumbnail, card o detail). Responde 304 si el ETag enviado en If-None-Match sigue vigente.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Imagen devuelta con éxito."),
+            @ApiResponse(responseCode = "304", description = "La imagen no cambió desde el ETag enviado."),
+            @ApiResponse(responseCode = "404", description = "El producto no existe o no tiene imagen.")
+    })
+    @GetMapping("/{id}/imagen")
+    public ResponseEntity<Resource> getImagenProducto(@PathVariable Long id,
+                                                      @RequestParam(required = false) String variante,
+                                                      WebRequest request) {
+        ImageVariant imageVariant = variante == null ? null : ImageVariant.desdeParametro(variante);
+        Optional<StoredImage> imagen = productImageService.getImagenProducto(id, imageVariant);
+        if (imagen.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + imagen.get().key() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null; // Spring responde 304 sin cuerpo
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .contentType(MediaType.parseMediaType(imagen.get().contentType()))
+                .contentLength(imagen.get().size())
+                .body(imagen.get().resource());
+    }
+
     @Operation(summary = "Obtener productos destacados",
             description = "Este endpoint devuelve una lista de productos que están marcados como destacados.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lista de productos destacados devuelta con éxito."),
+            @ApiResponse(responseCode = "200", description = "Lista de productos destacados devuelta con éxito.",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = ProductCardDTO.class)))),
+            @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag enviado."),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor.")
     })
-    @GetMapping("/destacados")
-    public List<ProductResponseDTO> getFeaturedProducts() {
-        return productoService.getFeaturedproducts();
+    @GetMapping(value = "/destacados", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getFeaturedProducts(WebRequest request) {
+        return snapshot(request, catalogVersion.conStockDeDestacados(), () -> catalogSnapshots.destacados());
     }
 
 
+    @Operation(summary = "Autocompletar búsqueda",
+            description = "Devuelve las mejores sugerencias (productos y categorías) que empiezan con lo escrito, pensado para llamarse en cada tecla.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sugerencias devueltas con éxito."),
+            @ApiResponse(responseCode = "400", description = "El límite está fuera de rango.")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "5") int limit) {
+
+        return ResponseEntity.ok(productoService.getSugerencias(q, limit));
+    }
+
+
+    @Operation(summary = "Buscar productos por texto",
+            description = "Busca en la descripción y los detalles de los productos y devuelve los resultados ordenados por relevancia. " +
+                    "Con fuzzy=true tolera errores de tipeo en la descripción.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página de productos devuelta con éxito."),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor.")
+    })
     @PostMapping("/search")
-    public ResponseEntity<Page<ProductResponseDTO>> searchProducts(
+    public ResponseEntity<Page<ProductCardDTO>> searchProducts(
             @RequestBody SearchByNameDTO searchByNameDTO,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
 
         Pageable pageable = PageRequest.of(page, size);
         String nombre = searchByNameDTO.nombre();
-        Page<ProductResponseDTO> productos = productoService.getSearchedProducts(nombre, pageable);
+        Page<ProductCardDTO> productos = productoService.getSearchedProducts(nombre, pageable, fuzzy);
 
         return ResponseEntity.ok(productos); // Devuelve 200 con la página de productos
     }
 
 
+    @Operation(summary = "Filtrar productos con facetas",
+            description = "Filtra por una o más categorías, rango de precio (inclusive) y stock disponible. "
+                    + "La respuesta incluye cuántos productos hay por categoría, por rango de precio y con stock, "
+                    + "cada conteo aplicando todos los filtros menos el propio. Orden: precio_asc, precio_desc, newest o id.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página filtrada devuelta con éxito."),
+            @ApiResponse(responseCode = "400", description = "Filtros, orden o paginación inválidos.")
+    })
+    @GetMapping("/filtro")
+    public ResponseEntity<FacetedPageDTO> filtrarProductos(
+            @RequestParam(required = false) Set<Long> categoria,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(defaultValue = "false") boolean enStock,
+            @RequestParam(defaultValue = "id") String orden,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+
+        return ResponseEntity.ok(productoService.getProductosFiltrados(categoria == null ? Set.of() : categoria,
+                precioMin, precioMax, enStock, ProductSort.desdeParametro(orden), page, size));
+    }
+
+
     @Operation(summary = "Obtener productos por categoría",
             description = "Este endpoint devuelve una lista de productos que pertenecen a una categoría específica.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Lista de productos devuelta con éxito."),
+            @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag enviado."),
             @ApiResponse(responseCode = "404", description = "No se encontraron productos para la categoría proporcionada."),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor.")
     })
-    @GetMapping("/categoria/{id}")
-    public ResponseEntity<Page<ProductResponseDTO>> getProductoByIdCategoria(
+    @GetMapping(value = "/categoria/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getProductoByIdCategoria(
             @PathVariable Long id,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest request) {
 
-        Pageable pageable = PageRequest.of(page, size);
-        Page<ProductResponseDTO> productos = productoService.getProductosByIdCategoria(id, pageable);
+        return snapshot(request, catalogVersion.conStockDeCategoria(id), () -> catalogSnapshots.categoria(id, page, size)); // 200 con la página de productos, o 304
+    }
 
+    @Operation(summary = "Obtener productos por categoría paginando por cursor",
+            description = "Devuelve la página siguiente al cursor recibido, sin contar el total. Orden: precio_asc, precio_desc, newest o id. "
+                    + "El campo nextCursor de la respuesta se envía como cursor para pedir la página siguiente.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página de productos devuelta con éxito."),
+            @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag enviado."),
+            @ApiResponse(responseCode = "400", description = "Cursor, orden o tamaño de página inválidos.")
+    })
+    @GetMapping("/categoria/{id}/cursor")
+    public ResponseEntity<CursorPageDTO<ProductCardDTO>> getProductoByIdCategoriaCursor(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "id") String orden,
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest request) {
 
-            return ResponseEntity.ok(productos); // Devuelve 200 con la página de productos
+        ProductSort productSort = ProductSort.desdeParametro(orden);
+        return versionado(request, catalogVersion.conStockDeCategoria(id), () -> productoService.getProductosByIdCategoriaCursor(id, cursor, productSort, size));
+    }
+
+
+    @Operation(summary = "Buscar productos paginando por cursor",
+            description = "Igual que /productos/search pero paginando por cursor, sin contar el total.")
+    @PostMapping("/search/cursor")
+    public ResponseEntity<CursorPageDTO<ProductCardDTO>> searchProductsCursor(
+            @RequestBody SearchByNameDTO searchByNameDTO,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "id") String orden,
+            @RequestParam(defaultValue = "10") int size) {
 
+        return ResponseEntity.ok(productoService.getSearchedProductsCursor(searchByNameDTO.nombre(), cursor, ProductSort.desdeParametro(orden), size));
     }
 
     @GetMapping("/categoria")
-    public ResponseEntity<List<CategoryDTO>> getCategorias() {
+    public ResponseEntity<List<CategoryDTO>> getCategorias(WebRequest request) {
 
-        return new ResponseEntity<>(productoService.getAllCategorias(), HttpStatus.OK);
+        return versionado(request, catalogVersion.actual(), () -> productoService.getAllCategorias());
     }
 
 
@@ -142,20 +324,42 @@ public class ProductController {
             @RequestParam("stock") int stock,
             @RequestParam("categoria") long categoria) {
 
-        String imagenBase64 = null;
+        String imagenKey = null;
         try {
-            imagenBase64 = Base64.getEncoder().encodeToString(imagen.getBytes());
+            imagenKey = productImageService.guardarImagen(imagen);
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(null);
         }
 
-        ProductDTO productoRequestDTO = new ProductDTO(imagenBase64, descripcion, precio, detalles, stock, categoria);
+        ProductDTO productoRequestDTO = new ProductDTO(imagenKey, descripcion, precio, detalles, stock, categoria);
         ProductResponseDTO producto = productoService.createProducto(productoRequestDTO);
         return ResponseEntity.ok(producto);
     }
 
 
 
+    @Operation(summary = "Importar productos en lote",
+            description = "Crea o actualiza (por descripción) productos desde un CSV con encabezado descripcion,precio,detalles,stock,categoria[,destacado] o un NDJSON con esos campos. La categoría se indica por nombre. El archivo se procesa a medida que llega y la respuesta informa el error de cada fila rechazada.",
+            security = @SecurityRequirement(name = "BearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Importación terminada, con el detalle de las filas que fallaron."),
+            @ApiResponse(responseCode = "400", description = "Al CSV le faltan columnas o está mal formado."),
+            @ApiResponse(responseCode = "403", description = "El usuario no tiene el rol ADMIN.")
+    })
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportResultDTO> importarProductos(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType tipo,
+                                                             InputStream cuerpo) throws IOException {
+        ProductImportService.Formato formato = MediaType.APPLICATION_NDJSON.isCompatibleWith(tipo)
+                ? ProductImportService.Formato.NDJSON
+                : ProductImportService.Formato.CSV;
+        InputStreamReader lector = new InputStreamReader(cuerpo,
+                tipo.getCharset() != null ? tipo.getCharset() : StandardCharsets.UTF_8);
+        return ResponseEntity.ok(productImportService.importar(lector, formato));
+    }
+
+
+
     @Operation(summary = "Actualizar un producto ya creado",security = @SecurityRequirement(name = "BearerAuth"))
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')") // Solo admin puede actualizar productos
@@ -166,13 +370,13 @@ public class ProductController {
                                             @RequestParam("stock") int stock,
                                             @RequestParam("categoria") long categoria) {
 
-        String imagenBase64 = null;
+        String imagenKey = null;
         try {
-            imagenBase64 = Base64.getEncoder().encodeToString(imagen.getBytes());
+            imagenKey = productImageService.guardarImagen(imagen);
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(null);
         }
-        ProductRequestUpdateDTO updateRequestDTO = new ProductRequestUpdateDTO(imagenBase64, descripcion, precio, detalles, stock, categoria);
+        ProductRequestUpdateDTO updateRequestDTO = new ProductRequestUpdateDTO(imagenKey, descripcion, precio, detalles, stock, categoria);
         ProductResponseDTO updatedProducto = productoService.updateProducto(id, updateRequestDTO);
         return new ResponseEntity<>(updatedProducto, HttpStatus.OK);
 
@@ -212,4 +416,75 @@ public class ProductController {
 
     }
 
+
+    /**
+     * GET condicional contra la version del catalogo: si el If-None-Match (o If-Modified-Since) del cliente
+     * sigue vigente responde 304 sin llamar al servicio; si no, arma el cuerpo con ETag y Last-Modified.
+     * La version (con el stock de lo que muestra la respuesta) se lee antes que los datos, ver {@link CatalogVersion}.
+     */
+    private <T> ResponseEntity<T> versionado(WebRequest request, CatalogVersion.Version version, Supplier<T> cuerpo) {
+        if (request.checkNotModified(version.etag(), version.ultimaModificacion())) {
+            return null; // Spring responde 304 sin cuerpo
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .body(cuerpo.get());
+    }
+
+    /**
+     * Igual que {@link #versionado} pero con el cuerpo ya serializado de {@link CatalogSnapshots}: se mandan los
+     * bytes en gzip si el cliente lo acepta, y si no se descomprimen, sin volver a pasar por Jackson. Cada
+     * codificacion lleva su propio ETag (la gzip con el sufijo -gz): son bytes distintos y un cache intermedio no
+     * tiene que poder confundirlos.
+     */
+    private ResponseEntity<byte[]> snapshot(WebRequest request, CatalogVersion.Version version,
+                                            Supplier<CatalogSnapshots.Snapshot> snapshot) {
+        boolean gzip = aceptaGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? version.etag().substring(0, version.etag().length() - 1) + "-gz\"" : version.etag();
+        if (request.checkNotModified(etag, version.ultimaModificacion())) {
+            return null;
+        }
+        CatalogSnapshots.Snapshot cuerpo = snapshot.get();
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cuerpo.gzip());
+        }
+        return respuesta.body(cuerpo.json());
+    }
+
+    /**
+     * Si el Accept-Encoding admite gzip: "gzip" (o "x-gzip") con q mayor a 0, o "*" con q mayor a 0 cuando gzip
+     * no aparece explicitamente. "gzip;q=0" lo rechaza.
+     */
+    private static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        boolean comodin = false;
+        for (String elemento : acceptEncoding.split(",")) {
+            String[] partes = elemento.trim().split(";");
+            String codificacion = partes[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (codificacion.equals("gzip") || codificacion.equals("x-gzip")) {
+                gzip = q > 0;
+            } else if (codificacion.equals("*")) {
+                comodin = q > 0;
+            }
+        }
+        return gzip != null ? gzip : comodin;
+    }
 }
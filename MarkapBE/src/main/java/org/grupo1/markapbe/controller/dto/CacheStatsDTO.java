@@ -0,0 +1,5 @@
+package org.grupo1.markapbe.controller.dto;
+
+// Contadores acumulados desde que arranco la aplicacion; hitRate es 1.0 si todavia no hubo pedidos
+public record CacheStatsDTO(String nombre, long hits, long misses, double hitRate, long evictions, long entradas) {
+}
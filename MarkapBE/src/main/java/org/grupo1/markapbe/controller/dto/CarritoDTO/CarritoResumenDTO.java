@@ -0,0 +1,12 @@
+package org.grupo1.markapbe.controller.dto.CarritoDTO;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+public record CarritoResumenDTO(
+        Long id,
+        Timestamp updatedAt,
+        long itemCount,
+        long amount,
+        BigDecimal total
+) {}
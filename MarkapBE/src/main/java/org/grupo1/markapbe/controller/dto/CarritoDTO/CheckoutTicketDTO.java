@@ -0,0 +1,8 @@
+package org.grupo1.markapbe.controller.dto.CarritoDTO;
+
+public record CheckoutTicketDTO(
+        String ticket,
+        String estado,
+        Long carritoId,
+        String mensaje
+) {}
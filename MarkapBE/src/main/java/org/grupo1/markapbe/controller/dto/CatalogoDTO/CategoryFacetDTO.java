@@ -0,0 +1,4 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+public record CategoryFacetDTO(Long id, String nombreCategoria, long cantidad) {
+}
@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.util.List;
+
+// nextCursor es null cuando no hay mas paginas
+public record CursorPageDTO<T>(List<T> content, String nextCursor, boolean hasNext) {
+}
@@ -0,0 +1,5 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+// disponible = stock - reservado (nunca negativo); reservado es lo apartado en carritos sin pagar
+public record DisponibilidadDTO(Long productoId, int stock, int reservado, int disponible) {
+}
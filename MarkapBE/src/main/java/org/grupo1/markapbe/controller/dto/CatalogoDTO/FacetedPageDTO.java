@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.util.List;
+
+// Pagina de productos filtrados junto con las facetas para refinar el filtro
+public record FacetedPageDTO(List<ProductCardDTO> content, int page, int size, long totalElements, FacetsDTO facetas) {
+}
@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.util.List;
+
+// Cada conteo aplica todos los filtros menos el propio, para saber cuantos productos habria al cambiarlo
+public record FacetsDTO(List<CategoryFacetDTO> categorias, List<PriceBucketDTO> precios, long enStock) {
+}
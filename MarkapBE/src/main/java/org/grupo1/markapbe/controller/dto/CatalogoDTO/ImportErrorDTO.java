@@ -0,0 +1,5 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+// fila es el numero de linea en NDJSON o de registro en CSV (sin contar el encabezado), empezando en 1
+public record ImportErrorDTO(long fila, String mensaje) {
+}
@@ -0,0 +1,8 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.util.List;
+
+// errores trae como mucho los primeros 1000; fallidas cuenta todas las filas que no se guardaron
+public record ImportResultDTO(long procesadas, long creadas, long actualizadas, long fallidas,
+                              List<ImportErrorDTO> errores) {
+}
@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.math.BigDecimal;
+
+// desde es inclusive y hasta exclusive; hasta es null en el ultimo bucket
+public record PriceBucketDTO(BigDecimal desde, BigDecimal hasta, long cantidad) {
+}
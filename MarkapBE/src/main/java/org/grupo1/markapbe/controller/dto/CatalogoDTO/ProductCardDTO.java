@@ -0,0 +1,6 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.math.BigDecimal;
+
+public record ProductCardDTO(Long id, String imagen, String descripcion, BigDecimal precio, int stock, String nombreCategoria, String nombreUserVendedor) {
+}
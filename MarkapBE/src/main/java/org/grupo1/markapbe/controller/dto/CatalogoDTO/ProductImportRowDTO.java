@@ -0,0 +1,8 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+import java.math.BigDecimal;
+
+// Una linea de la importacion NDJSON (o una fila del CSV); categoria es el nombre, destacado es opcional
+public record ProductImportRowDTO(String descripcion, BigDecimal precio, String detalles, Integer stock,
+                                  String categoria, Boolean destacado) {
+}
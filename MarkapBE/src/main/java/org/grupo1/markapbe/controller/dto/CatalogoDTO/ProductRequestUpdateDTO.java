@@ -4,5 +4,5 @@ import org.grupo1.markapbe.persistence.entity.CategoryEntity;
 
 import java.math.BigDecimal;
 
-public record ProductRequestUpdateDTO(String imagen, String descripcion, BigDecimal precio, String detalles, int stock, long categoria){
+public record ProductRequestUpdateDTO(String imagenKey, String descripcion, BigDecimal precio, String detalles, int stock, long categoria){
 }
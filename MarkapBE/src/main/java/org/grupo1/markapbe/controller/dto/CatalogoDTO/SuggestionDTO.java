@@ -0,0 +1,5 @@
+package org.grupo1.markapbe.controller.dto.CatalogoDTO;
+
+// tipo es "producto" o "categoria"; id es el del producto o el de la categoria segun el caso
+public record SuggestionDTO(String texto, String tipo, Long id) {
+}
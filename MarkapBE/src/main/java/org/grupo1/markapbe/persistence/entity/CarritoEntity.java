@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -14,11 +15,15 @@ import java.util.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "carrito")
+// Historial de pedidos: los carritos pagados de un usuario en orden de fecha salen del indice
+@Table(name = "carrito", indexes = {
+        @Index(name = "idx_carrito_user_pagado_fecha", columnList = "userId, payment_status, fechaPagado")
+})
 public class CarritoEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carrito_seq")
+    @SequenceGenerator(name = "carrito_seq", sequenceName = "carrito_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "payment_status", nullable = false)
@@ -34,4 +39,14 @@ public class CarritoEntity {
     @Column(name = "fechaPagado")
     private Timestamp updatedAt;
 
+    // Totales del carrito, al dia con sus items cada vez que el CartStore los escribe
+    @Column(name = "cantidadItems")
+    private Integer itemCount;
+
+    @Column(name = "unidades")
+    private Integer unidades;
+
+    @Column(name = "total")
+    private BigDecimal total;
+
 }
@@ -21,7 +21,8 @@ import java.util.Set;
 public class FavoriteProductsEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "favorite_products_seq")
+    @SequenceGenerator(name = "favorite_products_seq", sequenceName = "favorite_products_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -3,17 +3,22 @@ package org.grupo1.markapbe.persistence.entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.math.BigDecimal;
+
 @Entity
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "itemsCarrito")
+@Table(name = "itemsCarrito", indexes = {
+        @Index(name = "idx_items_carrito_carrito_producto", columnList = "carritoId, productId")
+})
 public class ItemsCarritoEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "items_carrito_seq")
+    @SequenceGenerator(name = "items_carrito_seq", sequenceName = "items_carrito_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -26,4 +31,8 @@ public class ItemsCarritoEntity {
 
     @Column(name = "amount")
     private int amount;
+
+    // Precio del producto cuando entro al carrito; null en los items anteriores a guardarlo
+    @Column(name = "precioUnitario")
+    private BigDecimal precioUnitario;
 }
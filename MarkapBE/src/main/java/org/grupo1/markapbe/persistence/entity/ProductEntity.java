@@ -15,15 +15,23 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "Products")
+@Table(name = "Products", indexes = {
+        // soportan la paginacion por cursor: filtro por categoria + orden (precio, id) o (id)
+        @Index(name = "idx_products_categoria_precio_id", columnList = "id_categoria, precio, id"),
+        @Index(name = "idx_products_categoria_id", columnList = "id_categoria, id"),
+        @Index(name = "idx_products_precio_id", columnList = "precio, id")
+})
 public class ProductEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // secuencia con allocationSize 50: Hibernate reserva 50 ids por viaje a la base y puede agrupar los INSERT en batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "imagen", columnDefinition = "TEXT")
-    private String imagen;
+    // hash SHA-256 de la imagen en el ImageStorage, los bytes ya no viajan en la fila del producto
+    @Column(name = "imagen_key", length = 64)
+    private String imagenKey;
 
     @Column(name = "descripcion",unique = true)
     private String descripcion;
@@ -38,7 +46,7 @@ public class ProductEntity {
     private int stock;
 
     @JsonIgnore
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_creador_id")  // El nombre de la columna que contendrá la clave foránea en la tabla actual
     private UserEntity user;
 
@@ -0,0 +1,35 @@
+package org.grupo1.markapbe.persistence.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Timestamp;
+
+/**
+ * Descuento de stock de un producto del ledger en memoria que todavia no se aplico a Products. Se escribe en la
+ * misma transaccion que la compra y se borra cuando el descuento llega a la fila del producto.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "StockJournal")
+public class StockJournalEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_journal_seq")
+    @SequenceGenerator(name = "stock_journal_seq", sequenceName = "stock_journal_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "id_producto", nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private int cantidad;
+
+    @CreationTimestamp
+    private Timestamp fecha;
+}
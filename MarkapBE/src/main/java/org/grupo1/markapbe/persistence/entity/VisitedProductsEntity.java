@@ -21,7 +21,8 @@ import java.util.Set;
 public class VisitedProductsEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "visited_products_seq")
+    @SequenceGenerator(name = "visited_products_seq", sequenceName = "visited_products_seq", allocationSize = 50)
     private Long id;
 
     @JsonIgnore
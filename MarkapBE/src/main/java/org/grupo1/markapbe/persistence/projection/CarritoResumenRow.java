@@ -0,0 +1,8 @@
+package org.grupo1.markapbe.persistence.projection;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+// Un carrito pagado con sus totales agrupados en el mismo SELECT: cantidad de productos, unidades y precio total
+public record CarritoResumenRow(Long carritoId, Timestamp fechaPagado, Long productos, Long unidades, BigDecimal total) {
+}
@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.persistence.projection;
+
+import java.math.BigDecimal;
+
+// Cantidad y precio unitario de un producto en un carrito, para cargar el carrito en memoria sin traer los productos
+public record ItemCantidadRow(Long productoId, int amount, BigDecimal precioUnitario) {
+}
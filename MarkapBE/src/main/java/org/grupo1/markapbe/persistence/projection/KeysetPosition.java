@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.persistence.projection;
+
+import java.math.BigDecimal;
+
+// Ultima fila de la pagina anterior; precio es null cuando el orden no lo usa
+public record KeysetPosition(BigDecimal precio, Long id) {
+}
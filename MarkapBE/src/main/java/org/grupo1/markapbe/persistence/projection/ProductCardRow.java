@@ -0,0 +1,8 @@
+package org.grupo1.markapbe.persistence.projection;
+
+import java.math.BigDecimal;
+
+// Proyeccion de las columnas que muestra una tarjeta del catalogo, con categoria y vendedor resueltos en el mismo SELECT
+public record ProductCardRow(Long id, String imagenKey, String descripcion, BigDecimal precio, int stock,
+                             String nombreCategoria, String nombreUserVendedor) {
+}
@@ -0,0 +1,7 @@
+package org.grupo1.markapbe.persistence.projection;
+
+import java.math.BigDecimal;
+
+// Columnas por las que se filtra el catalogo, para reconstruir el indice de facetas
+public record ProductFacetRow(Long id, Long idCategoria, BigDecimal precio, int stock) {
+}
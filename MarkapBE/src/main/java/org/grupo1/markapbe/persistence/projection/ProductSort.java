@@ -0,0 +1,25 @@
+package org.grupo1.markapbe.persistence.projection;
+
+import java.util.Arrays;
+
+/**
+ * Ordenes soportados por la paginacion por cursor. Todos desempatan por id para que el orden sea total
+ * y el cursor (ultimo precio + ultimo id) identifique una unica posicion.
+ */
+public enum ProductSort {
+    PRECIO_ASC,
+    PRECIO_DESC,
+    NEWEST,
+    ID;
+
+    public boolean usaPrecio() {
+        return this == PRECIO_ASC || this == PRECIO_DESC;
+    }
+
+    public static ProductSort desdeParametro(String valor) {
+        return Arrays.stream(values())
+                .filter(orden -> orden.name().equalsIgnoreCase(valor))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Orden desconocido: " + valor));
+    }
+}
@@ -0,0 +1,5 @@
+package org.grupo1.markapbe.persistence.projection;
+
+// Lo que necesita el autocompletado de cada producto: el texto y los datos para calcular su peso
+public record ProductSuggestionRow(Long id, String descripcion, int stock, boolean destacado, Long idCategoria) {
+}
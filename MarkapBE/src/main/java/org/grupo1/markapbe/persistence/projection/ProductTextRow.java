@@ -0,0 +1,5 @@
+package org.grupo1.markapbe.persistence.projection;
+
+// Texto de un producto para reconstruir el indice de busqueda, sin cargar la entidad ni sus relaciones
+public record ProductTextRow(Long id, String descripcion, String detalles) {
+}
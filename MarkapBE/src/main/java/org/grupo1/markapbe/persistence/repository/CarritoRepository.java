@@ -3,6 +3,9 @@ package org.grupo1.markapbe.persistence.repository;
 import jakarta.transaction.Transactional;
 import org.grupo1.markapbe.persistence.entity.CarritoEntity;
 import org.grupo1.markapbe.persistence.entity.ItemsCarritoEntity;
+import org.grupo1.markapbe.persistence.projection.CarritoResumenRow;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,9 +22,21 @@ public interface CarritoRepository extends JpaRepository<CarritoEntity, Long> {
     @Query("SELECT c FROM CarritoEntity AS c WHERE c.User.id = :userId AND c.paymentStatus = false")
     Optional<CarritoEntity> findActiveCarritoByUser(@Param("userId") Long userId);
 
+    @Query("SELECT c FROM CarritoEntity AS c WHERE c.User.username = :username AND c.paymentStatus = false")
+    Optional<CarritoEntity> findActiveCarritoByUsername(@Param("username") String username);
+
     @Query("SELECT c FROM CarritoEntity AS c WHERE c.User.id = :userId AND c.paymentStatus = true")
     Optional<List<CarritoEntity>> findPaidCarritos(@Param("userId") Long userId);
-}
-
-
 
+    // Historial paginado: cada carrito pagado con sus totales en un solo SELECT agrupado, del mas reciente al mas viejo.
+    // Parte del carrito con LEFT JOIN a los items: un carrito pagado sin items tambien aparece, con totales en cero
+    @Query(value = "SELECT new org.grupo1.markapbe.persistence.projection.CarritoResumenRow(" +
+            "c.id, c.updatedAt, count(ic.id), coalesce(sum(ic.amount), 0), " +
+            "coalesce(sum(ic.amount * coalesce(ic.precioUnitario, p.precio)), 0)) " +
+            "FROM CarritoEntity AS c LEFT JOIN ItemsCarritoEntity AS ic ON ic.carrito = c LEFT JOIN ic.product AS p " +
+            "WHERE c.User.username = :username AND c.paymentStatus = true " +
+            "GROUP BY c.id, c.updatedAt ORDER BY c.updatedAt DESC, c.id DESC",
+            countQuery = "SELECT count(c) FROM CarritoEntity AS c " +
+                    "WHERE c.User.username = :username AND c.paymentStatus = true")
+    Page<CarritoResumenRow> findResumenPagadosByUsername(@Param("username") String username, Pageable pageable);
+}
@@ -1,9 +1,11 @@
 package org.grupo1.markapbe.persistence.repository;
 
 import org.grupo1.markapbe.persistence.entity.*;
+import org.grupo1.markapbe.persistence.projection.ProductCardRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,7 +14,12 @@ import java.util.Optional;
 @Repository
 public interface FavoriteProductsRepository extends JpaRepository<FavoriteProductsEntity, Long> {
 
-    Optional<List<FavoriteProductsEntity>> findFavoriteProductsEntitiesByUser(UserEntity user);
+    // los favoritos se muestran como tarjetas del catalogo: producto, categoria y vendedor en el mismo SELECT
+    @Query("SELECT new org.grupo1.markapbe.persistence.projection.ProductCardRow(" +
+            "p.id, p.imagenKey, p.descripcion, p.precio, p.stock, c.nombreCategoria, u.username) " +
+            "FROM FavoriteProductsEntity f JOIN f.product p JOIN p.categoria c LEFT JOIN p.user u " +
+            "WHERE f.user = :user ORDER BY f.id")
+    List<ProductCardRow> findFavoriteCardsByUser(@Param("user") UserEntity user);
 
     Optional<FavoriteProductsEntity> findByUserAndProductId(UserEntity user, Long productId);
 
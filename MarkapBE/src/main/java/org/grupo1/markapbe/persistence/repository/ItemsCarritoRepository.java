@@ -3,6 +3,7 @@ package org.grupo1.markapbe.persistence.repository;
 import org.grupo1.markapbe.persistence.entity.CarritoEntity;
 import org.grupo1.markapbe.persistence.entity.ItemsCarritoEntity;
 import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.projection.ItemCantidadRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -30,5 +31,14 @@ public interface ItemsCarritoRepository extends JpaRepository<ItemsCarritoEntity
 
     List<ItemsCarritoEntity> getItemsCarritoEntitiesByCarrito(CarritoEntity carrito);
 
+    // Checkout: los items con su producto en un solo SELECT, en orden de producto
+    @Query("SELECT ic FROM ItemsCarritoEntity AS ic JOIN FETCH ic.product AS p WHERE ic.carrito.id = :carritoId ORDER BY p.id")
+    List<ItemsCarritoEntity> findAllConProductoByCarritoId(@Param("carritoId") Long carritoId);
+
+    // Los items sin precio guardado toman el precio actual del producto
+    @Query("SELECT new org.grupo1.markapbe.persistence.projection.ItemCantidadRow(p.id, ic.amount, coalesce(ic.precioUnitario, p.precio)) " +
+            "FROM ItemsCarritoEntity AS ic JOIN ic.product AS p WHERE ic.carrito.id = :carritoId")
+    List<ItemCantidadRow> findCantidadesByCarritoId(@Param("carritoId") Long carritoId);
+
 
 }
@@ -3,19 +3,31 @@ package org.grupo1.markapbe.persistence.repository;
 import org.grupo1.markapbe.persistence.entity.ProductEntity;
 import org.grupo1.markapbe.persistence.entity.UserEntity;
 import org.grupo1.markapbe.persistence.entity.UserProfileEntity;
+import org.grupo1.markapbe.persistence.projection.ProductCardRow;
+import org.grupo1.markapbe.persistence.projection.ProductFacetRow;
+import org.grupo1.markapbe.persistence.projection.ProductSuggestionRow;
+import org.grupo1.markapbe.persistence.projection.ProductTextRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<ProductEntity, Long> {
+public interface ProductRepository extends JpaRepository<ProductEntity, Long>, ProductRepositoryCustom {
+
+    // Detalle de un producto: categoria y vendedor son LAZY, se traen en el mismo SELECT
+    @EntityGraph(attributePaths = {"categoria", "user"})
+    Optional<ProductEntity> findConCategoriaYUserById(Long id);
 
     Page<ProductEntity> findByCategoria_Id(Long idCategoria, Pageable pageable);
 
@@ -23,6 +35,53 @@ public interface ProductRepository extends JpaRepository<ProductEntity, Long> {
 
     Page<ProductEntity> findByDescripcionContainingIgnoreCase(String nombre, Pageable pageable);
 
-    /*Page<ProductEntity> findByPrecioBetween(BigDecimal minPrice, BigDecimal maxPrice); // para tener en cuenta */
+    // Consultas de tarjetas: solo las columnas del listado, con categoria y vendedor en el mismo SELECT
+    String SELECT_CARD = "SELECT new org.grupo1.markapbe.persistence.projection.ProductCardRow(" +
+            "p.id, p.imagenKey, p.descripcion, p.precio, p.stock, c.nombreCategoria, u.username) " +
+            "FROM ProductEntity p JOIN p.categoria c LEFT JOIN p.user u ";
+
+    @Query(SELECT_CARD + "ORDER BY p.id")
+    List<ProductCardRow> findAllCards();
+
+    @Query(value = SELECT_CARD + "WHERE c.id = :idCategoria ORDER BY p.id",
+            countQuery = "SELECT count(p) FROM ProductEntity p WHERE p.categoria.id = :idCategoria")
+    Page<ProductCardRow> findCardsByCategoria(@Param("idCategoria") Long idCategoria, Pageable pageable);
+
+    @Query(SELECT_CARD + "WHERE p.destacado = true ORDER BY p.id")
+    List<ProductCardRow> findFeaturedCards();
+
+    @Query(value = SELECT_CARD + "WHERE lower(p.descripcion) LIKE lower(concat('%', :nombre, '%')) ORDER BY p.id",
+            countQuery = "SELECT count(p) FROM ProductEntity p WHERE lower(p.descripcion) LIKE lower(concat('%', :nombre, '%'))")
+    Page<ProductCardRow> findCardsByDescripcion(@Param("nombre") String nombre, Pageable pageable);
+
+    @Query(SELECT_CARD + "WHERE p.id IN :ids")
+    List<ProductCardRow> findCardsByIds(@Param("ids") Collection<Long> ids);
+
+    // Recorre el catalogo por id en lotes para reconstruir el indice de busqueda
+    @Query("SELECT new org.grupo1.markapbe.persistence.projection.ProductTextRow(p.id, p.descripcion, p.detalles) " +
+            "FROM ProductEntity p WHERE p.id > :desde ORDER BY p.id")
+    List<ProductTextRow> findTextRowsAfter(@Param("desde") Long desde, Pageable pageable);
+
+    @Query("SELECT new org.grupo1.markapbe.persistence.projection.ProductSuggestionRow(" +
+            "p.id, p.descripcion, p.stock, p.destacado, p.categoria.id) " +
+            "FROM ProductEntity p WHERE p.id > :desde ORDER BY p.id")
+    List<ProductSuggestionRow> findSuggestionRowsAfter(@Param("desde") Long desde, Pageable pageable);
+
+    @Query("SELECT new org.grupo1.markapbe.persistence.projection.ProductFacetRow(p.id, p.categoria.id, p.precio, p.stock) " +
+            "FROM ProductEntity p WHERE p.id > :desde ORDER BY p.id")
+    List<ProductFacetRow> findFacetRowsAfter(@Param("desde") Long desde, Pageable pageable);
+
+    @Query("SELECT p.imagenKey FROM ProductEntity p WHERE p.id = :id")
+    Optional<String> findImagenKeyById(@Param("id") Long id);
+
+    @Query("SELECT p.stock FROM ProductEntity p WHERE p.id = :id")
+    Optional<Integer> findStockById(@Param("id") Long id);
+
+    // La condicion y la resta van en la misma sentencia: la base serializa las compras del mismo producto con el
+    // lock de la fila y ninguna puede dejar el stock negativo. Devuelve 0 si no alcanza (o el producto no existe)
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock - :cantidad WHERE p.id = :id AND p.stock >= :cantidad")
+    int descontarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
 
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package org.grupo1.markapbe.persistence.repository;
+
+import org.grupo1.markapbe.persistence.projection.KeysetPosition;
+import org.grupo1.markapbe.persistence.projection.ProductCardRow;
+import org.grupo1.markapbe.persistence.projection.ProductSort;
+
+import java.util.List;
+import java.util.SortedMap;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Pagina por keyset: en vez de OFFSET filtra las filas posteriores a {@code desde} segun el orden,
+     * asi una pagina profunda cuesta lo mismo que la primera y no hace falta un COUNT.
+     *
+     * @param idCategoria filtra por categoria si no es null
+     * @param texto       filtra por descripcion (contiene, sin distinguir mayusculas) si no es null
+     * @param desde       posicion de la ultima fila devuelta, null para la primera pagina
+     */
+    List<ProductCardRow> findCardsKeyset(Long idCategoria, String texto, ProductSort orden, KeysetPosition desde, int limite);
+
+    /**
+     * Descuenta el stock de varios productos en un solo lote de UPDATEs condicionales, en orden de id. Cada
+     * sentencia solo resta si alcanza, igual que {@link ProductRepository#descontarStock}; el lote no es atomico
+     * por si solo, el que llama tiene que deshacer la transaccion si alguno no alcanzo. Los productos del lote se
+     * sacan del contexto de persistencia; el resto de las entidades cargadas no se toca.
+     *
+     * @param cantidades unidades a descontar por id de producto
+     * @return los ids a los que no les alcanzo el stock (vacio si se desconto todo)
+     */
+    List<Long> descontarStockEnLote(SortedMap<Long, Integer> cantidades);
+}
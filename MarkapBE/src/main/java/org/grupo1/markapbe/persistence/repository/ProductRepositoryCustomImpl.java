@@ -0,0 +1,113 @@
+package org.grupo1.markapbe.persistence.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.projection.KeysetPosition;
+import org.grupo1.markapbe.persistence.projection.ProductCardRow;
+import org.grupo1.markapbe.persistence.projection.ProductSort;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final String DESCONTAR_STOCK = "UPDATE Products SET stock = stock - ? WHERE id = ? AND stock >= ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProductCardRow> findCardsKeyset(Long idCategoria, String texto, ProductSort orden, KeysetPosition desde, int limite) {
+        List<String> condiciones = new ArrayList<>();
+        if (idCategoria != null) {
+            condiciones.add("c.id = :idCategoria");
+        }
+        if (texto != null) {
+            condiciones.add("lower(p.descripcion) LIKE lower(concat('%', :texto, '%'))");
+        }
+        if (desde != null) {
+            condiciones.add(condicionKeyset(orden));
+        }
+
+        String jpql = ProductRepository.SELECT_CARD
+                + (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ")
+                + ordenamiento(orden);
+
+        TypedQuery<ProductCardRow> query = entityManager.createQuery(jpql, ProductCardRow.class);
+        if (idCategoria != null) {
+            query.setParameter("idCategoria", idCategoria);
+        }
+        if (texto != null) {
+            query.setParameter("texto", texto);
+        }
+        if (desde != null) {
+            query.setParameter("id", desde.id());
+            if (orden.usaPrecio()) {
+                query.setParameter("precio", desde.precio());
+            }
+        }
+        return query.setMaxResults(limite).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public List<Long> descontarStockEnLote(SortedMap<Long, Integer> cantidades) {
+        entityManager.flush();
+        List<Long> sinStock = new ArrayList<>();
+        // en la misma conexion de la transaccion: un solo viaje a la base para todo el lote
+        entityManager.unwrap(Session.class).doWork(conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(DESCONTAR_STOCK)) {
+                for (var cantidad : cantidades.entrySet()) {
+                    sentencia.setInt(1, cantidad.getValue());
+                    sentencia.setLong(2, cantidad.getKey());
+                    sentencia.setInt(3, cantidad.getValue());
+                    sentencia.addBatch();
+                }
+                int[] filas = sentencia.executeBatch();
+                int i = 0;
+                for (Long id : cantidades.keySet()) {
+                    int fila = filas[i++];
+                    // sin la cantidad de filas no se sabe si al producto le alcanzo: el lote no se puede usar
+                    if (fila == Statement.SUCCESS_NO_INFO || fila == Statement.EXECUTE_FAILED) {
+                        throw new IllegalStateException("El driver no informa las filas actualizadas en el lote de stock");
+                    }
+                    if (fila == 0) {
+                        sinStock.add(id);
+                    }
+                }
+            }
+        });
+        // solo los productos del lote quedaron con el stock viejo: se sacan del contexto y se vuelven a leer al
+        // usarse. El resto (el carrito que despues se guarda, sus items) sigue administrado
+        for (Long id : cantidades.keySet()) {
+            entityManager.detach(entityManager.getReference(ProductEntity.class, id));
+        }
+        return sinStock;
+    }
+
+    // La desigualdad redundante sobre precio deja que la base recorra el indice (id_categoria, precio, id) por rango
+    private static String condicionKeyset(ProductSort orden) {
+        return switch (orden) {
+            case PRECIO_ASC -> "p.precio >= :precio AND (p.precio > :precio OR p.id > :id)";
+            case PRECIO_DESC -> "p.precio <= :precio AND (p.precio < :precio OR p.id < :id)";
+            case NEWEST -> "p.id < :id";
+            case ID -> "p.id > :id";
+        };
+    }
+
+    private static String ordenamiento(ProductSort orden) {
+        return switch (orden) {
+            case PRECIO_ASC -> "ORDER BY p.precio ASC, p.id ASC";
+            case PRECIO_DESC -> "ORDER BY p.precio DESC, p.id DESC";
+            case NEWEST -> "ORDER BY p.id DESC";
+            case ID -> "ORDER BY p.id ASC";
+        };
+    }
+}
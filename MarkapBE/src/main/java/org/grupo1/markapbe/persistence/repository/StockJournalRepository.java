@@ -0,0 +1,15 @@
+package org.grupo1.markapbe.persistence.repository;
+
+import org.grupo1.markapbe.persistence.entity.StockJournalEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockJournalRepository extends JpaRepository<StockJournalEntity, Long> {
+
+    // unidades vendidas del producto que todavia no se descontaron de Products
+    @Query("SELECT COALESCE(SUM(j.cantidad), 0) FROM StockJournalEntity j WHERE j.productoId = :productoId")
+    long sumPendienteByProductoId(@Param("productoId") Long productoId);
+}
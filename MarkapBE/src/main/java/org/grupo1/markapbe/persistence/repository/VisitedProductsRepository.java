@@ -2,6 +2,7 @@ package org.grupo1.markapbe.persistence.repository;
 
 import org.grupo1.markapbe.persistence.entity.*;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,9 +13,12 @@ import java.util.Optional;
 @Repository
 public interface VisitedProductsRepository extends JpaRepository<VisitedProductsEntity, Long> {
 
+    // el producto se serializa entero en la respuesta, se trae con la visita en vez de un SELECT por fila
+    @EntityGraph(attributePaths = "product")
     List<VisitedProductsEntity> findVisitedProductsEntityByUser(@Param("userEntity") UserEntity userEntity, Pageable pageable);
 
     Optional<VisitedProductsEntity> findVisitedProductsEntityByUserAndProduct(@Param("userEntity") UserEntity userEntity, ProductEntity productEntity);
 
+    @EntityGraph(attributePaths = "product")
     List<VisitedProductsEntity> findVisitedProductsEntityByUser(@Param("userEntity") UserEntity userEntity);
 }
@@ -0,0 +1,34 @@
+package org.grupo1.markapbe.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.grupo1.markapbe.controller.dto.CacheStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+
+@Service
+public class CacheStatsService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+
+    public List<CacheStatsDTO> getEstadisticas() {
+        return cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(cacheManager::getCache)
+                .filter(Objects::nonNull)
+                .map(cache -> {
+                    Cache<Object, Object> nativa = ((CaffeineCache) cache).getNativeCache();
+                    CacheStats stats = nativa.stats();
+                    return new CacheStatsDTO(cache.getName(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                            stats.evictionCount(), nativa.estimatedSize());
+                })
+                .toList();
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.grupo1.markapbe.controller.dto.CarritoDTO.CarritoDTO;
+import org.grupo1.markapbe.controller.dto.CarritoDTO.CarritoResumenDTO;
 import org.grupo1.markapbe.controller.dto.CarritoDTO.ItemsCarritoDTO;
 import org.grupo1.markapbe.persistence.entity.CarritoEntity;
 import org.grupo1.markapbe.persistence.entity.ItemsCarritoEntity;
@@ -11,20 +12,28 @@ import org.grupo1.markapbe.persistence.entity.ProductEntity;
 import org.grupo1.markapbe.persistence.entity.UserEntity;
 import org.grupo1.markapbe.persistence.repository.CarritoRepository;
 import org.grupo1.markapbe.persistence.repository.ItemsCarritoRepository;
+import org.grupo1.markapbe.service.carrito.CarritoActivo;
+import org.grupo1.markapbe.service.carrito.CartStore;
+import org.grupo1.markapbe.service.reserva.StockReservations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
 public class CarritoService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private CarritoRepository carritoRepository;
 
@@ -40,17 +49,24 @@ public class CarritoService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private CartStore cartStore;
+
     //Funciones Publicas: Retornan DTO o boolean;
 
     public CarritoDTO getCarritoDTO(Long carritoId) {
         return convertToDTO(getCarrito(carritoId));
     }
 
+    // Un carrito que quedo vacio se borra en la proxima escritura: para el usuario ya no existe
     public CarritoDTO getActiveCarritoDTO() {
-        UserEntity user = userService.obtenerUsuarioPeticion();
-        CarritoEntity carrito = carritoRepository.findActiveCarritoByUser(user.getId())
+        CarritoActivo carrito = cartStore.obtener(userService.obtenerUsernamePeticion(), null)
+                .filter(activo -> !activo.vacio())
                 .orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado."));
-        return convertToDTO(carrito);
+        return new CarritoDTO(carrito.getId(), false, carrito.getUpdatedAt());
     }
 
     public List<CarritoDTO> getAllPaidCarritos() {
@@ -65,66 +81,94 @@ public class CarritoService {
         return Collections.emptyList();
     }
 
+    // Resumen para el contador del header: sale de los totales del carrito en memoria, sin leer los items.
+    // Sin carrito activo devuelve todo en cero
+    public CarritoResumenDTO getResumenCarritoActivo() {
+        return cartStore.obtener(userService.obtenerUsernamePeticion(), null)
+                .map(carrito -> {
+                    CarritoActivo.Resumen resumen = carrito.resumen();
+                    return new CarritoResumenDTO(carrito.getId(), carrito.getUpdatedAt(), resumen.items(),
+                            resumen.unidades(), resumen.total());
+                })
+                .orElseGet(() -> new CarritoResumenDTO(null, null, 0, 0, BigDecimal.ZERO));
+    }
+
+    // Los totales usan el precio de cada item al agregarlo (el actual del producto si es un item anterior a guardarlo)
+    public Page<CarritoResumenDTO> getHistorialPaginado(int pagina, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El tamaño de pagina debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        if (pagina < 0) {
+            throw new IllegalArgumentException("La pagina no puede ser negativa");
+        }
+        return carritoRepository.findResumenPagadosByUsername(userService.obtenerUsernamePeticion(), PageRequest.of(pagina, size))
+                .map(row -> new CarritoResumenDTO(row.carritoId(), row.fechaPagado(), row.productos(), row.unidades(), row.total()));
+    }
+
     public Page<ItemsCarritoDTO> getAllItemsByCarritoDTO(CarritoDTO carritoDTO, int pagina, int size) {
+        cartStore.escribirCarrito(carritoDTO.id());
         Optional<Page<ItemsCarritoEntity>> itemsCarritoEntity = getAllItemsByCarrito(carritoDTO.id(), pagina, size);
         return itemsCarritoEntity.map(itemsCarritoEntities -> itemsCarritoEntities
                 .map(this::convertToDTO))
                 .orElseGet(Page::empty);
     }
 
+    // Agregar y quitar son operaciones en memoria: el carrito esta en el CartStore y el stock sale del detalle en cache
     public boolean addItemToCarrito(Long productId, int amount) {
-        ProductEntity product = productService.getEntityById(productId);
-        if (product.getStock() < amount)
+        int stock = productService.getStockVendible(productId)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado."));
+        if (stock < amount)
             throw new IllegalArgumentException("No hay Stock Disponible.");
-        CarritoEntity carrito = getActiveCarrito();
-        Optional<ItemsCarritoEntity> itemCarrito = itemsCarritoRepository.findByCarritoIdAndProductId(
-                carrito.getId(), productId);
-        if (itemCarrito.isEmpty()) {
-            ItemsCarritoEntity newItemCarrito = ItemsCarritoEntity.builder()
-                    .carrito(carrito)
-                    .product(product)
-                    .amount(amount)
-                    .build();
-            itemsCarritoRepository.save(newItemCarrito);
-        } else {
-            ItemsCarritoEntity itemsCarritoEntity = itemCarrito.get();
-            int sumaItems = itemsCarritoEntity.getAmount() + amount;
-            if (sumaItems > product.getStock()) {
-                throw new IllegalArgumentException("No hay Stock Disponible para el Total Requerido");
+        BigDecimal precio = productService.getPrecioVendible(productId).orElse(null);
+        return cartStore.modificar(userService.obtenerUsernamePeticion(), this::createCarrito, carrito -> {
+            int actual = carrito.cantidad(productId);
+            // se reserva el total del item: lo que ya tenia el carrito mas lo que se agrega
+            int total = actual + amount;
+            if (!stockReservations.reservar(carrito.getId(), productId, total, stock)) {
+                throw new IllegalArgumentException(actual == 0
+                        ? "No hay Stock Disponible."
+                        : "No hay Stock Disponible para el Total Requerido");
             }
-            itemsCarritoEntity.setAmount(itemsCarritoEntity.getAmount() + amount);
-            itemsCarritoRepository.save(itemsCarritoEntity);
-        }
-        return true;
+            cartStore.poner(carrito, productId, total, precio);
+            return true;
+        });
     }
 
     public boolean removeItemFromCarrito(Long productId, int amount) {
-        CarritoEntity carrito = getActiveCarrito();
-        ProductEntity product = productService.getEntityById(productId);
-        ItemsCarritoEntity itemCarrito = itemsCarritoRepository
-                .findByCarritoIdAndProductId(carrito.getId(), product.getId())
-                .orElseThrow(() -> new EntityNotFoundException("Producto en el Carrito no encontrado."));
-        if (itemCarrito.getAmount() < amount) {
-            throw new IllegalArgumentException("No existe tal cantidad de Cantidad en el Carrito para eliminar.");
-        }
-        if (itemCarrito.getAmount() == amount) {
-            itemsCarritoRepository.delete(itemCarrito);
-        } else {
-            itemCarrito.setAmount(itemCarrito.getAmount() - amount);
-            itemsCarritoRepository.save(itemCarrito);
-        }
-        if (!existItemsIntoCarrito(carrito.getId()))
-            carritoRepository.delete(carrito);
-        return true;
+        String usuario = userService.obtenerUsernamePeticion();
+        if (cartStore.obtener(usuario, null).isEmpty())
+            throw new EntityNotFoundException("Producto en el Carrito no encontrado.");
+        return cartStore.modificar(usuario, null, carrito -> {
+            int actual = carrito.cantidad(productId);
+            if (actual == 0) {
+                throw new EntityNotFoundException("Producto en el Carrito no encontrado.");
+            }
+            if (actual < amount) {
+                throw new IllegalArgumentException("No existe tal cantidad de Cantidad en el Carrito para eliminar.");
+            }
+            cartStore.poner(carrito, productId, actual - amount, null);
+            if (actual == amount) {
+                stockReservations.liberar(carrito.getId(), productId);
+            } else {
+                // bajar la reserva siempre se puede; si ya habia vencido se vuelve a pedir si alcanza
+                stockReservations.reservar(carrito.getId(), productId, actual - amount,
+                        productService.getStockVendible(productId).orElse(0));
+            }
+            return true;
+        });
     }
 
     @Transactional(rollbackOn = Exception.class)
     public boolean changeStatusCarritoToPaid() {
+        String usuario = userService.obtenerUsernamePeticion();
+        // el checkout lee los items de la base: primero se escriben los cambios del carrito en memoria
+        cartStore.escribir(usuario);
         CarritoEntity carrito = getActiveCarrito();
         if (!checkItemsIntoProducts(carrito))
             throw new IllegalArgumentException("No hay Stock Disponible de un item, se elimina el mismo del carrito.");
         carrito.setPaymentStatus(true);
         carritoRepository.save(carrito);
+        cartStore.cerrarAlConfirmar(usuario);
         return true;
     }
 
@@ -132,14 +176,17 @@ public class CarritoService {
         return itemsCarritoRepository.existsByCarritoId(carritoId);
     }
 
+    // Despues de un checkout fallido: el stock se lee de la base, no del detalle en cache
     public void updateExistingStockItems() {
-        CarritoEntity carrito = getActiveCarrito();
-        List<ItemsCarritoEntity> allItems = itemsCarritoRepository.getItemsCarritoEntitiesByCarrito(carrito);
-        for (ItemsCarritoEntity item : allItems) {
-            Long productId = item.getProduct().getId();
+        Optional<CarritoActivo> carrito = cartStore.obtener(userService.obtenerUsernamePeticion(), null);
+        if (carrito.isEmpty())
+            return;
+        for (Map.Entry<Long, Integer> item : carrito.get().items().entrySet()) {
+            Long productId = item.getKey();
             ProductEntity product = productService.getEntityById(productId);
-            if(item.getAmount() > product.getStock()) {
-                int diff = item.getAmount() - product.getStock();
+            int stock = productService.getStockActual(product);
+            if(item.getValue() > stock) {
+                int diff = item.getValue() - stock;
                 removeItemFromCarrito(productId, diff);
             }
         }
@@ -186,18 +233,28 @@ public class CarritoService {
         return objectMapper.convertValue(itemsCarritoEntity, ItemsCarritoDTO.class);
     }
 
+    // Los items llegan con su producto en un solo SELECT y el stock se valida en memoria; despues todos los descuentos
+    // van en un solo lote, asi el checkout hace la misma cantidad de viajes a la base sin importar cuantos items tenga.
+    // El lote descuenta en orden de producto: dos checkouts con productos en comun toman los locks de fila en el
+    // mismo orden y no pueden trabarse entre si. Si uno no alcanza, la transaccion del checkout deshace los demas.
+    // Los items cuya reserva vencio se vuelven a reservar contra el stock disponible antes de descontarlos, asi
+    // no se llevan unidades que otro carrito tiene reservadas
     private boolean checkItemsIntoProducts(CarritoEntity carrito){
-        List<ItemsCarritoEntity> allItems = itemsCarritoRepository.getItemsCarritoEntitiesByCarrito(carrito);
+        List<ItemsCarritoEntity> allItems = itemsCarritoRepository.findAllConProductoByCarritoId(carrito.getId());
+        Map<Long, Integer> cantidades = new TreeMap<>();
         for (ItemsCarritoEntity item : allItems) {
-            Long productId = item.getProduct().getId();
-            ProductEntity product = productService.getEntityById(productId);
-            if(item.getAmount() > product.getStock()) {
+            ProductEntity product = item.getProduct();
+            int stock = productService.getStockActual(product);
+            if (item.getAmount() > stock)
                 return false;
-            }
-            boolean stockModified = productService.consumeStock(productId, item.getAmount());
-            if (!stockModified)
+            if (!stockReservations.cubre(carrito.getId(), product.getId(), item.getAmount())
+                    && !stockReservations.reservar(carrito.getId(), product.getId(), item.getAmount(), stock))
                 return false;
+            cantidades.put(product.getId(), item.getAmount());
         }
+        if (!productService.consumeStock(cantidades))
+            return false;
+        stockReservations.confirmar(carrito.getId(), cantidades.keySet());
         return true;
     }
 
@@ -0,0 +1,115 @@
+package org.grupo1.markapbe.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductResponseDTO;
+import org.grupo1.markapbe.service.storage.ImageVariant;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Exporta el catalogo completo como NDJSON (un producto por linea) escribiendo cada fila apenas se lee.
+ * <p>
+ * La consulta usa un cursor JDBC de solo avance con un fetch size fijo: el driver trae las filas de a lotes y
+ * ninguna lista del catalogo llega a armarse en memoria, asi el consumo es el mismo con 100 o con un millon de
+ * productos. Se corre en una transaccion de solo lectura porque PostgreSQL solo respeta el fetch size con el
+ * autocommit apagado (si no, manda todo el resultado de una vez).
+ */
+@Service
+public class CatalogExportService {
+
+    private static final String SELECT_EXPORT = "SELECT p.id, p.imagen_key, p.descripcion, p.precio, p.detalles, " +
+            "p.stock, c.nombre_categoria, u.username " +
+            "FROM Products p JOIN Categories c ON c.id = p.id_categoria " +
+            "LEFT JOIN users u ON u.id = p.user_creador_id ORDER BY p.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final TransactionTemplate soloLectura;
+
+    @Value("${catalogo.export.fetch-size:500}")
+    private int fetchSize;
+
+
+    public CatalogExportService(PlatformTransactionManager transactionManager) {
+        this.soloLectura = new TransactionTemplate(transactionManager);
+        this.soloLectura.setReadOnly(true);
+    }
+
+
+    /**
+     * Escribe el catalogo en la salida sin cerrarla. Si el cliente corta la descarga, la escritura falla,
+     * el cursor se cierra y la transaccion termina ahi.
+     */
+    public void exportar(OutputStream salida) throws IOException {
+        // sin flush por producto: cada flush del servlet es una escritura al socket
+        ObjectWriter escritor = objectMapper.writerFor(ProductResponseDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generador = objectMapper.getFactory().createGenerator(salida);
+        generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generador.setRootValueSeparator(null); // el separador entre productos es el salto de linea
+        long[] escritos = {0};
+        try {
+            soloLectura.executeWithoutResult(status -> jdbcTemplate.query(conexion -> {
+                PreparedStatement sentencia = conexion.prepareStatement(SELECT_EXPORT,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                sentencia.setFetchSize(fetchSize);
+                return sentencia;
+            }, fila -> {
+                escribir(escritor, generador, fila);
+                // cada lote leido se manda al cliente en vez de esperar a que se llene el buffer del servlet
+                if (++escritos[0] % fetchSize == 0) {
+                    flush(generador);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generador.close();
+    }
+
+
+    private static void escribir(ObjectWriter escritor, JsonGenerator generador, ResultSet fila) throws SQLException {
+        long id = fila.getLong("id");
+        try {
+            escritor.writeValue(generador, new ProductResponseDTO(
+                    id,
+                    ProductImageService.urlImagen(id, fila.getString("imagen_key"), ImageVariant.DETAIL),
+                    fila.getString("descripcion"),
+                    fila.getBigDecimal("precio"),
+                    fila.getString("detalles"),
+                    fila.getInt("stock"),
+                    fila.getString("nombre_categoria"),
+                    fila.getString("username")));
+            generador.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private static void flush(JsonGenerator generador) {
+        try {
+            generador.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
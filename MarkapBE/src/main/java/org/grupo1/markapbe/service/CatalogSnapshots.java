@@ -0,0 +1,165 @@
+package org.grupo1.markapbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.grupo1.markapbe.config.CacheConfig;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Respuestas ya serializadas (JSON comprimido con gzip) de la lista de destacados y de las paginas por categoria,
+ * que cambian poco y se piden mucho. El controller manda los bytes tal cual, sin pasar por Jackson.
+ * <p>
+ * Cada snapshot se arma la primera vez que se pide (una sola carga aunque lleguen varios pedidos juntos) y se
+ * descarta solo cuando una escritura lo afecta: un {@link ProductChangedEvent} tira las paginas de la categoria
+ * nueva y la anterior del producto, y la lista de destacados si el producto es destacado. Las demas categorias
+ * siguen sirviendose sin tocar la base. La cache se acota por tamaño en bytes.
+ * <p>
+ * Los listeners corren cuando la escritura confirma, antes que el de {@link CatalogVersion}: quien lee un ETag
+ * nuevo ya no encuentra el snapshot viejo, y un pedido concurrente no puede volver a armarlo con datos sin confirmar.
+ * <p>
+ * La clave lleva la generacion de su categoria (o de los destacados), que sube con cada invalidacion. Un snapshot
+ * que se estaba armando cuando confirmo la escritura se guarda con la generacion vieja y nadie lo vuelve a pedir:
+ * borrar las claves no alcanza, porque una carga en curso todavia no esta en el mapa.
+ */
+@Component
+public class CatalogSnapshots {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Cache<Clave, Snapshot> cache;
+
+    // generacion por categoria; la de los destacados va aparte
+    private final ConcurrentHashMap<Long, AtomicLong> generaciones = new ConcurrentHashMap<>();
+    private final AtomicLong generacionDestacados = new AtomicLong();
+
+    private final int maxPageSize;
+
+
+    public CatalogSnapshots(@Value("${catalogo.snapshots.max-tamano:32MB}") DataSize maxTamano,
+                            @Value("${catalogo.snapshots.max-page-size:100}") int maxPageSize,
+                            @Autowired CacheManager cacheManager) {
+        this.maxPageSize = maxPageSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxTamano.toBytes())
+                .weigher((Clave clave, Snapshot snapshot) -> snapshot.gzip().length)
+                .recordStats()
+                .build();
+        // igual que ProductDetailCache: se registra para que aparezca en /admin/cache y se pueda vaciar desde ahi
+        ((CaffeineCacheManager) cacheManager).registerCustomCache(CacheConfig.SNAPSHOTS_CATALOGO, castear(cache));
+    }
+
+
+    public Snapshot destacados() {
+        return cache.get(new Clave(null, generacionDestacados.get(), 0, 0), clave -> comprimir(productService.getFeaturedproducts()));
+    }
+
+
+    /**
+     * Pagina de una categoria. Las paginas mas grandes que el maximo se arman en el momento sin guardarse,
+     * para que un size enorme no desplace a las paginas normales.
+     */
+    public Snapshot categoria(Long idCategoria, int page, int size) {
+        PageRequest pagina = PageRequest.of(page, size);
+        if (size > maxPageSize) {
+            return comprimir(productService.getProductosByIdCategoria(idCategoria, pagina));
+        }
+        return cache.get(new Clave(idCategoria, generacion(idCategoria).get(), page, size),
+                clave -> comprimir(productService.getProductosByIdCategoria(idCategoria, pagina)));
+    }
+
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent evento) {
+        Long categoriaNueva = evento.producto() == null ? null : evento.producto().getCategoria().getId();
+        for (Long categoria : new Long[]{categoriaNueva, evento.categoriaAnteriorId()}) {
+            if (categoria != null) {
+                generacion(categoria).incrementAndGet();
+            }
+        }
+        // sin el producto (baja) no se sabe si era destacado, se rearma igual
+        if (evento.producto() == null || evento.producto().isDestacado()) {
+            generacionDestacados.incrementAndGet();
+        }
+        // las claves viejas ya no se piden: se borran para no ocupar lugar
+        cache.asMap().keySet().removeIf(clave -> clave.generacion() != (clave.categoria() == null
+                ? generacionDestacados.get() : generacion(clave.categoria()).get()));
+    }
+
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(classes = CatalogImportedEvent.class, phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogImported() {
+        generaciones.values().forEach(AtomicLong::incrementAndGet);
+        generacionDestacados.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+
+    private Snapshot comprimir(Object cuerpo) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, cuerpo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Snapshot(bytes.toByteArray());
+    }
+
+
+    private AtomicLong generacion(Long idCategoria) {
+        return generaciones.computeIfAbsent(idCategoria, id -> new AtomicLong());
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Cache<Object, Object> castear(Cache cache) {
+        return cache;
+    }
+
+
+    // categoria null es la lista de destacados
+    private record Clave(Long categoria, long generacion, int page, int size) {
+    }
+
+
+    public record Snapshot(byte[] gzip) {
+
+        /**
+         * El JSON sin comprimir, para los clientes que no mandan Accept-Encoding: gzip.
+         */
+        public byte[] json() {
+            try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+                return entrada.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
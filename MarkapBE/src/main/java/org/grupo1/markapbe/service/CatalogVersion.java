@@ -0,0 +1,118 @@
+package org.grupo1.markapbe.service;
+
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Version del catalogo para los GET condicionales: cambia con cada escritura de ProductService
+ * (via {@link ProductChangedEvent}) y de ella salen el ETag y el Last-Modified de los listados y detalles.
+ * <p>
+ * Los cambios de stock (una venta) no mueven la version del catalogo: llevan su propio contador para todo el
+ * listado, por categoria, para los destacados y por producto. Un endpoint que muestra stock suma a la version el
+ * contador de lo que muestra, asi una venta solo invalida los ETags de las respuestas que incluyen ese producto.
+ * <p>
+ * El ETag incluye el instante de arranque, asi un reinicio (que vuelve el contador a cero) nunca repite
+ * un ETag viejo. Quien arma una respuesta tiene que leer la version ANTES de leer los datos: si una escritura
+ * cae en el medio, el cliente recibe datos nuevos con el ETag anterior y en la proxima revalidacion se los
+ * vuelve a bajar, nunca al reves. Por eso la version sube cuando la escritura confirma (o enseguida si no hay
+ * transaccion): antes, un lector podria llevarse el ETag nuevo con los datos viejos.
+ */
+@Component
+public class CatalogVersion {
+
+    private final long inicio = System.currentTimeMillis();
+    private final String arranque = Long.toString(inicio, 36);
+
+    // lo que todavia no tuvo cambios (o ventas) desde el arranque
+    private final Contador inicial = new Contador(0, inicio);
+
+    private final AtomicReference<Contador> catalogo = new AtomicReference<>(inicial);
+
+    private final AtomicReference<Contador> stock = new AtomicReference<>(inicial);
+    private final AtomicReference<Contador> stockDestacados = new AtomicReference<>(inicial);
+    private final ConcurrentHashMap<Long, Contador> stockPorCategoria = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Contador> stockPorProducto = new ConcurrentHashMap<>();
+
+
+    // Para lo que no muestra stock
+    public Version actual() {
+        return version(catalogo.get(), null);
+    }
+
+
+    // Listado completo
+    public Version conStock() {
+        return version(catalogo.get(), stock.get());
+    }
+
+
+    public Version conStockDeDestacados() {
+        return version(catalogo.get(), stockDestacados.get());
+    }
+
+
+    public Version conStockDeCategoria(Long idCategoria) {
+        return version(catalogo.get(), stockPorCategoria.getOrDefault(idCategoria, inicial));
+    }
+
+
+    public Version conStockDeProducto(Long idProducto) {
+        return version(catalogo.get(), stockPorProducto.getOrDefault(idProducto, inicial));
+    }
+
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent evento) {
+        if (evento.tipo() != ProductChangedEvent.Tipo.STOCK) {
+            catalogo.updateAndGet(Contador::siguiente);
+            if (evento.tipo() == ProductChangedEvent.Tipo.ELIMINADO) {
+                stockPorProducto.remove(evento.productoId());
+            }
+            return;
+        }
+        stock.updateAndGet(Contador::siguiente);
+        stockPorProducto.compute(evento.productoId(), (id, anterior) -> Contador.siguiente(anterior));
+        if (evento.producto() != null) {
+            stockPorCategoria.compute(evento.producto().getCategoria().getId(), (id, anterior) -> Contador.siguiente(anterior));
+            if (evento.producto().isDestacado()) {
+                stockDestacados.updateAndGet(Contador::siguiente);
+            }
+        }
+    }
+
+
+    @TransactionalEventListener(classes = CatalogImportedEvent.class, phase = TransactionPhase.AFTER_COMMIT,
+            fallbackExecution = true)
+    public void onCatalogImported() {
+        catalogo.updateAndGet(Contador::siguiente);
+    }
+
+
+    private Version version(Contador catalogo, Contador stock) {
+        if (stock == null) {
+            return new Version(catalogo.numero(), "\"catalogo-" + arranque + "-" + catalogo.numero() + "\"",
+                    catalogo.instante());
+        }
+        return new Version(catalogo.numero(),
+                "\"catalogo-" + arranque + "-" + catalogo.numero() + "-" + stock.numero() + "\"",
+                Math.max(catalogo.instante(), stock.instante()));
+    }
+
+
+    public record Version(long numero, String etag, long ultimaModificacion) {
+    }
+
+
+    private record Contador(long numero, long instante) {
+
+        static Contador siguiente(Contador anterior) {
+            return new Contador(anterior == null ? 1 : anterior.numero() + 1, System.currentTimeMillis());
+        }
+    }
+}
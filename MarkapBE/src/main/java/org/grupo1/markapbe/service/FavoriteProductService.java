@@ -1,8 +1,7 @@
 package org.grupo1.markapbe.service;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import org.grupo1.markapbe.controller.dto.FavoriteProductRequestDTO;
-import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductCardDTO;
 import org.grupo1.markapbe.persistence.entity.FavoriteProductsEntity;
 import org.grupo1.markapbe.persistence.entity.ProductEntity;
 import org.grupo1.markapbe.persistence.entity.UserEntity;
@@ -26,18 +25,17 @@ public class FavoriteProductService {
     private ProductRepository productosRepository;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private ProductService productService;
 
     @Autowired
     private UserService userService;
 
 
-    public List<ProductDTO> getLikes(){
+    // Mismas tarjetas que los listados del catalogo, con la URL de la miniatura en vez de la clave de la imagen
+    public List<ProductCardDTO> getLikes(){
         UserEntity userEntity = userService.obtenerUsuarioPeticion();
-        List<FavoriteProductsEntity> productos = productosFavoritosRepository.findFavoriteProductsEntitiesByUser(userEntity).orElseThrow(() -> new EntityNotFoundException("No existen likes"));
-        return productos.stream()
-                .map(FavoriteProductsEntity::getProduct)
-                .map(this::convertToDto)
+        return productosFavoritosRepository.findFavoriteCardsByUser(userEntity).stream()
+                .map(productService::convertToCardDto)
                 .collect(Collectors.toList());
     }
 
@@ -49,15 +47,6 @@ public class FavoriteProductService {
         return new FavoriteProductRequestDTO(likeGuardado.getId());
     }
 
-    private ProductDTO convertToDto(ProductEntity producto) {
-        String base64Image = producto.getImagen();
-        if (base64Image != null) {
-            // Asegúrate de que el tipo de archivo coincida, por ejemplo, 'jpeg', 'png', etc.
-            producto.setImagen("data:image/jpeg;base64," + base64Image);
-        }
-        return objectMapper.convertValue(producto,ProductDTO.class);
-    }
-
     public void eliminarProductoFavorito(Long productId) {
         UserEntity userEntity = userService.obtenerUsuarioPeticion();
         FavoriteProductsEntity favorito = productosFavoritosRepository
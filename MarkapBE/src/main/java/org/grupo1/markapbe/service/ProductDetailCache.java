@@ -0,0 +1,97 @@
+package org.grupo1.markapbe.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.grupo1.markapbe.config.CacheConfig;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductResponseDTO;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache del detalle de producto (GET /productos/{id}) por id.
+ * <p>
+ * La carga es single-flight: si llegan varios pedidos del mismo id sin cachear, Caffeine ejecuta una sola carga
+ * y los demas esperan ese resultado. Los ids que no existen tambien se cachean, con un TTL corto, para que
+ * recorrer ids al azar no llegue a la base. Cualquier {@link ProductChangedEvent} invalida la entrada
+ * (incluido el alta, que puede pisar un id cacheado como inexistente). La invalidacion se hace cuando la escritura
+ * confirma: antes, una lectura concurrente podria volver a cachear la fila vieja por todo el TTL.
+ */
+@Component
+public class ProductDetailCache {
+
+    private final Cache<Long, Optional<ProductResponseDTO>> cache;
+
+
+    public ProductDetailCache(@Value("${catalogo.cache.detalle.max-entradas:10000}") long maxEntradas,
+                              @Value("${catalogo.cache.detalle.ttl:10m}") Duration ttl,
+                              @Value("${catalogo.cache.detalle.ttl-inexistente:30s}") Duration ttlInexistente,
+                              @Autowired CacheManager cacheManager) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfter(new PorExistencia(ttl, ttlInexistente))
+                .recordStats()
+                .build();
+        // se registra en el CacheManager solo para que aparezca en /admin/cache junto con las demas
+        ((CaffeineCacheManager) cacheManager).registerCustomCache(CacheConfig.DETALLE_PRODUCTO, castear(cache));
+    }
+
+
+    public Optional<ProductResponseDTO> get(Long id, Function<Long, Optional<ProductResponseDTO>> cargar) {
+        return cache.get(id, cargar);
+    }
+
+
+    public void invalidar(Long id) {
+        cache.invalidate(id);
+    }
+
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent evento) {
+        invalidar(evento.productoId());
+    }
+
+
+    @TransactionalEventListener(classes = CatalogImportedEvent.class, phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogImported() {
+        cache.invalidateAll();
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Cache<Object, Object> castear(Cache cache) {
+        return cache;
+    }
+
+
+    // Los productos existentes viven el TTL normal y los inexistentes el corto; leer no extiende ninguno
+    private record PorExistencia(Duration ttl, Duration ttlInexistente) implements Expiry<Long, Optional<ProductResponseDTO>> {
+
+        @Override
+        public long expireAfterCreate(Long id, Optional<ProductResponseDTO> detalle, long ahora) {
+            return (detalle.isPresent() ? ttl : ttlInexistente).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, Optional<ProductResponseDTO> detalle, long ahora, long restante) {
+            return expireAfterCreate(id, detalle, ahora);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, Optional<ProductResponseDTO> detalle, long ahora, long restante) {
+            return restante;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.grupo1.markapbe.service;
+
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.storage.ImageStorage;
+import org.grupo1.markapbe.service.storage.ImageVariant;
+import org.grupo1.markapbe.service.storage.ImageVariantProcessor;
+import org.grupo1.markapbe.service.storage.StoredImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+@Service
+public class ProductImageService {
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ImageVariantProcessor imageVariantProcessor;
+
+    @Autowired
+    private ProductRepository productoRepository;
+
+
+    public String guardarImagen(MultipartFile imagen) throws IOException {
+        String key;
+        try (InputStream contenido = imagen.getInputStream()) {
+            key = imageStorage.store(contenido);
+        }
+        imageVariantProcessor.programar(key); // las variantes se generan en el pool de imagenes, no en esta peticion
+        return key;
+    }
+
+
+    /**
+     * Devuelve la variante pedida o, si todavia no se genero, la imagen original (y se encola su generacion).
+     * Con variante null devuelve el original.
+     */
+    public Optional<StoredImage> getImagenProducto(Long idProducto, ImageVariant variante) {
+        Optional<String> key = productoRepository.findImagenKeyById(idProducto);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        if (variante != null) {
+            Optional<StoredImage> redimensionada = imageStorage.loadVariant(key.get(), variante);
+            if (redimensionada.isPresent()) {
+                return redimensionada;
+            }
+            imageVariantProcessor.programar(key.get());
+        }
+        return imageStorage.load(key.get());
+    }
+
+
+    public static String urlImagen(Long idProducto, String imagenKey, ImageVariant variante) {
+        return imagenKey == null ? null : "/productos/" + idProducto + "/imagen?variante=" + variante.parametro();
+    }
+}
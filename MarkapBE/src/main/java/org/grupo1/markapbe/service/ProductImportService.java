@@ -0,0 +1,367 @@
+package org.grupo1.markapbe.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.config.CacheConfig;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ImportErrorDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ImportResultDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductImportRowDTO;
+import org.grupo1.markapbe.persistence.entity.CategoryEntity;
+import org.grupo1.markapbe.persistence.repository.CategoryRepository;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.importacion.CsvReader;
+import org.grupo1.markapbe.service.search.TextNormalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Importacion masiva de productos desde un CSV o un NDJSON que se lee a medida que llega.
+ * <p>
+ * Las filas validas se juntan en lotes y cada lote se guarda en una transaccion con dos batches JDBC: UPDATE de
+ * las descripciones que ya existen (la descripcion es unica) e INSERT del resto. Asi el upsert funciona igual en
+ * H2 y en PostgreSQL. Las categorias se resuelven contra un mapa cargado una sola vez. Si un lote falla en la base
+ * se reintenta fila por fila, para reportar solo las filas que realmente fallan.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    private static final int MAX_ERRORES_REPORTADOS = 1000;
+
+    // largo por defecto de las columnas String de ProductEntity
+    private static final int LARGO_MAXIMO_TEXTO = 255;
+
+    private static final List<String> COLUMNAS_REQUERIDAS = List.of("descripcion", "precio", "detalles", "stock", "categoria");
+
+    // el id sale de la misma secuencia que usa Hibernate: cada nextval cae fuera de los bloques que ya reservo
+    private static final String INSERT = "INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, " +
+            "user_creador_id, destacado) VALUES (nextval('products_seq'), ?, ?, ?, ?, ?, ?, ?)";
+
+    // el creador y la imagen no cambian; destacado solo si la fila lo trae
+    private static final String UPDATE = "UPDATE Products SET detalles = ?, precio = ?, stock = ?, id_categoria = ?, " +
+            "destacado = COALESCE(?, destacado) WHERE id = ?";
+
+    public enum Formato {
+        CSV,
+        NDJSON
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private CategoryRepository categoriaRepository;
+
+    @Autowired
+    private UserService usuarioService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transaccion;
+
+    @Value("${catalogo.importacion.lote:1000}")
+    private int tamanioLote;
+
+
+    public ProductImportService(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+
+    /**
+     * @throws IllegalArgumentException si al CSV le faltan columnas en el encabezado o tiene comillas sin cerrar
+     */
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
+    public ImportResultDTO importar(Reader entrada, Formato formato) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Importacion importacion = new Importacion(categoriasPorNombre(), usuarioService.obtenerUsuarioPeticion().getId());
+        try {
+            if (formato == Formato.CSV) {
+                leerCsv(new CsvReader(new BufferedReader(entrada), ','), importacion);
+            } else {
+                leerNdjson(new BufferedReader(entrada), importacion);
+            }
+        } finally {
+            // lo que ya se leyo se guarda aunque el archivo venga cortado
+            importacion.escribirLote();
+            if (importacion.creadas + importacion.actualizadas > 0) {
+                eventPublisher.publishEvent(new CatalogImportedEvent(importacion.creadas, importacion.actualizadas));
+            }
+        }
+
+        ImportResultDTO resultado = importacion.resultado();
+        log.info("Importacion de productos: {} filas, {} creadas, {} actualizadas, {} con error en {} ms",
+                resultado.procesadas(), resultado.creadas(), resultado.actualizadas(), resultado.fallidas(),
+                System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+
+    private void leerCsv(CsvReader lector, Importacion importacion) throws IOException {
+        List<String> encabezado = lector.siguiente();
+        if (encabezado == null) {
+            return;
+        }
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < encabezado.size(); i++) {
+            columnas.put(TextNormalizer.normalizar(encabezado.get(i).trim()), i);
+        }
+        List<String> faltantes = COLUMNAS_REQUERIDAS.stream().filter(c -> !columnas.containsKey(c)).toList();
+        if (!faltantes.isEmpty()) {
+            throw new IllegalArgumentException("Faltan columnas en el encabezado del CSV: " + String.join(", ", faltantes));
+        }
+
+        long numero = 0;
+        List<String> registro;
+        while ((registro = lector.siguiente()) != null) {
+            numero++;
+            if (registro.size() != encabezado.size()) {
+                importacion.error(numero, "Se esperaban " + encabezado.size() + " columnas y hay " + registro.size() + ".");
+                continue;
+            }
+            try {
+                importacion.agregar(numero, new ProductImportRowDTO(
+                        campo(registro, columnas, "descripcion"),
+                        precio(campo(registro, columnas, "precio")),
+                        campo(registro, columnas, "detalles"),
+                        entero(campo(registro, columnas, "stock")),
+                        campo(registro, columnas, "categoria"),
+                        booleano(campo(registro, columnas, "destacado"))));
+            } catch (IllegalArgumentException e) {
+                importacion.error(numero, e.getMessage());
+            }
+        }
+    }
+
+
+    private void leerNdjson(BufferedReader lector, Importacion importacion) throws IOException {
+        long numero = 0;
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numero++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            try {
+                importacion.agregar(numero, objectMapper.readValue(linea, ProductImportRowDTO.class));
+            } catch (JsonProcessingException e) {
+                importacion.error(numero, "JSON invalido: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+
+    private Map<String, Long> categoriasPorNombre() {
+        Map<String, Long> categorias = new HashMap<>();
+        for (CategoryEntity categoria : categoriaRepository.findAll()) {
+            categorias.put(TextNormalizer.normalizar(categoria.getNombreCategoria().trim()), categoria.getId());
+        }
+        return categorias;
+    }
+
+
+    private static String campo(List<String> registro, Map<String, Integer> columnas, String nombre) {
+        Integer indice = columnas.get(nombre);
+        if (indice == null) {
+            return null;
+        }
+        String valor = registro.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+
+    private static BigDecimal precio(String valor) {
+        try {
+            return valor == null ? null : new BigDecimal(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El precio '" + valor + "' no es un numero.");
+        }
+    }
+
+
+    private static Integer entero(String valor) {
+        try {
+            return valor == null ? null : Integer.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El stock '" + valor + "' no es un numero entero.");
+        }
+    }
+
+
+    private static Boolean booleano(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        return switch (TextNormalizer.normalizar(valor)) {
+            case "true", "si", "1" -> true;
+            case "false", "no", "0" -> false;
+            default -> throw new IllegalArgumentException("Destacado '" + valor + "' no es true/false.");
+        };
+    }
+
+
+    private record FilaValida(long numero, String descripcion, String detalles, BigDecimal precio, int stock,
+                              long idCategoria, Boolean destacado) {
+    }
+
+
+    // Estado de una importacion: el lote pendiente y los contadores del reporte
+    private class Importacion {
+
+        private final Map<String, Long> categorias;
+        private final Long idUsuario;
+        private final Map<String, FilaValida> lote = new LinkedHashMap<>();
+        private final List<ImportErrorDTO> errores = new ArrayList<>();
+        private long procesadas;
+        private long creadas;
+        private long actualizadas;
+        private long fallidas;
+
+        private Importacion(Map<String, Long> categorias, Long idUsuario) {
+            this.categorias = categorias;
+            this.idUsuario = idUsuario;
+        }
+
+        private void agregar(long numero, ProductImportRowDTO fila) {
+            procesadas++;
+            String descripcion = fila.descripcion() == null ? "" : fila.descripcion().trim();
+            String mensaje = validar(descripcion, fila);
+            if (mensaje != null) {
+                registrarError(numero, mensaje);
+                return;
+            }
+            // la misma descripcion dos veces en el lote: se guarda lo anterior para que gane la ultima
+            if (lote.containsKey(descripcion)) {
+                escribirLote();
+            }
+            lote.put(descripcion, new FilaValida(numero, descripcion, fila.detalles(), fila.precio(), fila.stock(),
+                    categorias.get(TextNormalizer.normalizar(fila.categoria().trim())), fila.destacado()));
+            if (lote.size() >= tamanioLote) {
+                escribirLote();
+            }
+        }
+
+        private String validar(String descripcion, ProductImportRowDTO fila) {
+            if (descripcion.isEmpty()) {
+                return "La descripcion no puede estar vacia.";
+            }
+            if (descripcion.length() > LARGO_MAXIMO_TEXTO) {
+                return "La descripcion supera los " + LARGO_MAXIMO_TEXTO + " caracteres.";
+            }
+            if (fila.detalles() != null && fila.detalles().length() > LARGO_MAXIMO_TEXTO) {
+                return "Los detalles superan los " + LARGO_MAXIMO_TEXTO + " caracteres.";
+            }
+            if (fila.precio() == null || fila.precio().signum() < 0) {
+                return "El precio es obligatorio y no puede ser negativo.";
+            }
+            if (fila.precio().scale() > 2) {
+                return "El precio admite hasta 2 decimales.";
+            }
+            if (fila.stock() == null || fila.stock() < 0) {
+                return "El stock es obligatorio y no puede ser negativo.";
+            }
+            if (fila.categoria() == null || fila.categoria().isBlank()) {
+                return "La categoria es obligatoria.";
+            }
+            if (!categorias.containsKey(TextNormalizer.normalizar(fila.categoria().trim()))) {
+                return "La categoria '" + fila.categoria() + "' no existe.";
+            }
+            return null;
+        }
+
+        private void error(long numero, String mensaje) {
+            procesadas++;
+            registrarError(numero, mensaje);
+        }
+
+        private void registrarError(long numero, String mensaje) {
+            fallidas++;
+            if (errores.size() < MAX_ERRORES_REPORTADOS) {
+                errores.add(new ImportErrorDTO(numero, mensaje));
+            }
+        }
+
+        private void escribirLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            List<FilaValida> filas = new ArrayList<>(lote.values());
+            lote.clear();
+            try {
+                guardar(filas);
+            } catch (DataAccessException e) {
+                log.warn("Fallo un lote de la importacion, se reintenta fila por fila: {}", e.getMostSpecificCause().getMessage());
+                for (FilaValida fila : filas) {
+                    try {
+                        guardar(List.of(fila));
+                    } catch (DataAccessException errorFila) {
+                        registrarError(fila.numero(), "No se pudo guardar: " + errorFila.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+
+        private void guardar(List<FilaValida> filas) {
+            int[] escritas = transaccion.execute(status -> {
+                Map<String, Long> existentes = new HashMap<>();
+                namedParameterJdbcTemplate.query("SELECT id, descripcion FROM Products WHERE descripcion IN (:descripciones)",
+                        Map.of("descripciones", filas.stream().map(FilaValida::descripcion).toList()),
+                        rs -> {
+                            existentes.put(rs.getString("descripcion"), rs.getLong("id"));
+                        });
+
+                List<Object[]> inserts = new ArrayList<>();
+                List<Object[]> updates = new ArrayList<>();
+                for (FilaValida fila : filas) {
+                    Long id = existentes.get(fila.descripcion());
+                    if (id == null) {
+                        inserts.add(new Object[]{fila.descripcion(), fila.detalles(), fila.precio(), fila.stock(),
+                                fila.idCategoria(), idUsuario, Boolean.TRUE.equals(fila.destacado())});
+                    } else {
+                        updates.add(new Object[]{fila.detalles(), fila.precio(), fila.stock(), fila.idCategoria(),
+                                fila.destacado(), id});
+                    }
+                }
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE, updates);
+                }
+                if (!inserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT, inserts);
+                }
+                return new int[]{inserts.size(), updates.size()};
+            });
+            creadas += escritas[0];
+            actualizadas += escritas[1];
+        }
+
+        private ImportResultDTO resultado() {
+            return new ImportResultDTO(procesadas, creadas, actualizadas, fallidas, List.copyOf(errores));
+        }
+    }
+}
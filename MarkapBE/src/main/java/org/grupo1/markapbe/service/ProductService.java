@@ -2,28 +2,69 @@ package org.grupo1.markapbe.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
+import org.grupo1.markapbe.config.CacheConfig;
 import org.grupo1.markapbe.controller.dto.CatalogoDTO.CategoryDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.CategoryFacetDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.CursorPageDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.DisponibilidadDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.FacetedPageDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.FacetsDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.PriceBucketDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductCardDTO;
 import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductDTO;
 import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductRequestUpdateDTO;
 import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductResponseDTO;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.SuggestionDTO;
 import org.grupo1.markapbe.persistence.entity.CategoryEntity;
 import org.grupo1.markapbe.persistence.entity.ProductEntity;
 import org.grupo1.markapbe.persistence.entity.UserEntity;
+import org.grupo1.markapbe.persistence.projection.KeysetPosition;
+import org.grupo1.markapbe.persistence.projection.ProductCardRow;
+import org.grupo1.markapbe.persistence.projection.ProductSort;
 import org.grupo1.markapbe.persistence.repository.CategoryRepository;
 import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.grupo1.markapbe.service.inventario.StockLedger;
+import org.grupo1.markapbe.service.reserva.StockReservations;
+import org.grupo1.markapbe.service.search.CatalogFacetIndex;
+import org.grupo1.markapbe.service.search.CatalogFacetIndexer;
+import org.grupo1.markapbe.service.search.ProductSearchIndexer;
+import org.grupo1.markapbe.service.search.ProductSuggester;
+import org.grupo1.markapbe.service.search.SearchHits;
+import org.grupo1.markapbe.service.storage.ImageVariant;
+import org.grupo1.markapbe.util.CursorCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 
 @Service
 public class ProductService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ProductRepository productoRepository;
 
@@ -39,78 +80,230 @@ public class ProductService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ProductSearchIndexer productSearchIndexer;
+
+    @Autowired
+    private ProductSuggester productSuggester;
 
+    @Autowired
+    private CatalogFacetIndexer catalogFacetIndexer;
+
+    @Autowired
+    private ProductDetailCache productDetailCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+
+    @Cacheable(CacheConfig.CATEGORIAS)
     public List<CategoryDTO> getAllCategorias() {
         return categoriaRepository.findAll().stream()
                 .map(this::convertToDto)
+                .toList(); // inmodificable, la misma lista se comparte desde la cache
+    }
+
+
+    public List<ProductCardDTO> getAllProductos() {
+        return productoRepository.findAllCards().stream()
+                .map(this::convertToCardDto)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Busqueda por texto en descripcion y detalles, ordenada por relevancia (BM25) desde el indice en memoria.
+     * Con fuzzy tolera errores de tipeo en la descripcion (indice de trigramas + distancia de edicion).
+     * Mientras el indice carga, o si la consulta no tiene palabras indexables, se usa el LIKE sobre la descripcion.
+     */
+    public Page<ProductCardDTO> getSearchedProducts(String nombre, Pageable pageable, boolean fuzzy) {
+        Optional<SearchHits> resultado = fuzzy
+                ? productSearchIndexer.buscarAproximado(nombre, (int) pageable.getOffset(), pageable.getPageSize())
+                : productSearchIndexer.buscar(nombre, (int) pageable.getOffset(), pageable.getPageSize());
+        if (resultado.isEmpty()) {
+            return productoRepository.findCardsByDescripcion(nombre, pageable)
+                    .map(this::convertToCardDto);
+        }
+        return new PageImpl<>(tarjetasEnOrden(resultado.get().productoIds()), pageable, resultado.get().total());
+    }
+
+
+    /**
+     * Filtra el catalogo por categorias, rango de precio y stock desde el indice columnar en memoria,
+     * y devuelve junto con la pagina los conteos de cada faceta.
+     */
+    public FacetedPageDTO getProductosFiltrados(Set<Long> categorias, BigDecimal precioMin, BigDecimal precioMax,
+                                                boolean soloConStock, ProductSort orden, int page, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El tamaño de pagina debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        if (page < 0) {
+            throw new IllegalArgumentException("La pagina no puede ser negativa");
+        }
+        if (precioMin != null && precioMax != null && precioMin.compareTo(precioMax) > 0) {
+            throw new IllegalArgumentException("El precio minimo no puede ser mayor al maximo");
+        }
+        CatalogFacetIndex.Resultado resultado = catalogFacetIndexer.filtrar(categorias, precioMin, precioMax,
+                soloConStock, orden, page * size, size);
+
+        List<CategoryFacetDTO> porCategoria = categoriaRepository.findAll().stream()
+                .map(c -> new CategoryFacetDTO(c.getId(), c.getNombreCategoria(), resultado.porCategoria().getOrDefault(c.getId(), 0L)))
                 .collect(Collectors.toList());
+        List<BigDecimal> limites = catalogFacetIndexer.limitesBuckets();
+        List<PriceBucketDTO> porPrecio = new ArrayList<>();
+        for (int i = 0; i < limites.size(); i++) {
+            BigDecimal hasta = i + 1 < limites.size() ? limites.get(i + 1) : null;
+            porPrecio.add(new PriceBucketDTO(limites.get(i), hasta, resultado.porBucket()[i]));
+        }
+
+        return new FacetedPageDTO(tarjetasEnOrden(resultado.productoIds()), page, size, resultado.total(),
+                new FacetsDTO(porCategoria, porPrecio, resultado.conStock()));
     }
 
 
-    public List<ProductResponseDTO> getAllProductos() {
-        return productoRepository.findAll().stream()
-                .map(this::convertToDtoResponse)
+    // Trae las tarjetas de los ids con un solo IN y las devuelve en el orden recibido (el IN no lo respeta)
+    private List<ProductCardDTO> tarjetasEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ProductCardRow> filas = new HashMap<>();
+        productoRepository.findCardsByIds(ids).forEach(fila -> filas.put(fila.id(), fila));
+        return ids.stream()
+                .map(filas::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToCardDto)
                 .collect(Collectors.toList());
     }
 
 
-    public Page<ProductResponseDTO> getSearchedProducts(String nombre, Pageable pageable) {
-        return productoRepository.findByDescripcionContainingIgnoreCase(nombre, pageable)
-                .map(this::convertToDtoResponse);
+    public List<SuggestionDTO> getSugerencias(String prefijo, int limite) {
+        if (limite < 1 || limite > ProductSuggester.MAX_SUGERENCIAS) {
+            throw new IllegalArgumentException("El limite debe estar entre 1 y " + ProductSuggester.MAX_SUGERENCIAS);
+        }
+        return productSuggester.sugerir(prefijo, limite).stream()
+                .map(s -> new SuggestionDTO(s.texto(), s.tipo().name().toLowerCase(Locale.ROOT), s.id()))
+                .collect(Collectors.toList());
     }
 
 
     public Optional<ProductResponseDTO> getProductoById(Long id) {
-        Optional<ProductEntity> producto = productoRepository.findById(id);
+        Optional<ProductResponseDTO> producto = productDetailCache.get(id, this::cargarDetalle);
 
         if (producto.isPresent()) {
-            try {
-                UserEntity usuario = usuarioService.obtenerUsuarioPeticion();
-                visitedProductService.createVisitedProduct(producto.get());
-            } catch (EntityNotFoundException e) {
+            registrarVisita(id);
+        }
+        return producto;
+    }
 
-            }
 
-            return Optional.of(convertToDtoResponse(producto.get()));
-        } else {
-            return Optional.empty();
+    // Sale del cache del detalle: tambien los ids inexistentes estan cacheados y no llegan a la base
+    public boolean existeProducto(Long id) {
+        return productDetailCache.get(id, this::cargarDetalle).isPresent();
+    }
+
+
+    // Tambien se llama cuando el detalle se responde con 304 (despues de {@link #existeProducto}), la visita cuenta igual
+    public void registrarVisita(Long id) {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion == null || autenticacion instanceof AnonymousAuthenticationToken) {
+            return; // sin usuario logueado no hay visita que registrar, ni hace falta buscarlo en la base
+        }
+        try {
+            // la visita no necesita cargar el producto, alcanza con la referencia para la FK
+            visitedProductService.createVisitedProduct(productoRepository.getReferenceById(id));
+        } catch (EntityNotFoundException e) {
+            // el token es de un usuario que ya no existe
         }
     }
 
 
-    public Page<ProductResponseDTO> getProductosByIdCategoria(Long id, Pageable pageable) {
-        return productoRepository.findByCategoria_Id(id, pageable) // Busca los productos por id de categoría con paginación
-                .map(this::convertToDtoResponse); // Convierte cada ProductEntity a ProductDTO de respuesta
+    // Stock menos lo reservado en carritos. No se cachea: cambia con cada producto que se agrega a un carrito
+    public Optional<DisponibilidadDTO> getDisponibilidad(Long id) {
+        return productoRepository.findStockById(id).map(stockBase -> stockLedger.stock(id, stockBase)).map(stock -> {
+            int reservado = stockReservations.reservado(id);
+            return new DisponibilidadDTO(id, stock, reservado, stockReservations.disponible(id, stock));
+        });
+    }
+
+
+    private Optional<ProductResponseDTO> cargarDetalle(Long id) {
+        return productoRepository.findConCategoriaYUserById(id).map(this::convertToDtoResponse);
+    }
+
+
+    public Page<ProductCardDTO> getProductosByIdCategoria(Long id, Pageable pageable) {
+        return productoRepository.findCardsByCategoria(id, pageable) // Busca las tarjetas por id de categoría con paginación
+                .map(this::convertToCardDto); // Convierte cada fila proyectada a la tarjeta de respuesta
     }
 
 
-    public List<ProductResponseDTO> getFeaturedproducts() {
-        return productoRepository.findByDestacadoTrue() // Busca los productos por campo "destacado" = true
+    public CursorPageDTO<ProductCardDTO> getProductosByIdCategoriaCursor(Long id, String cursor, ProductSort orden, int size) {
+        return paginarPorCursor(id, null, cursor, orden, size);
+    }
+
+
+    public CursorPageDTO<ProductCardDTO> getSearchedProductsCursor(String nombre, String cursor, ProductSort orden, int size) {
+        return paginarPorCursor(null, nombre, cursor, orden, size);
+    }
+
+
+    // Trae una fila de mas para saber si hay pagina siguiente sin hacer un COUNT
+    private CursorPageDTO<ProductCardDTO> paginarPorCursor(Long idCategoria, String texto, String cursor, ProductSort orden, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El tamaño de pagina debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        KeysetPosition desde = cursor == null || cursor.isBlank() ? null : CursorCodec.decode(cursor, orden);
+        List<ProductCardRow> filas = productoRepository.findCardsKeyset(idCategoria, texto, orden, desde, size + 1);
+
+        boolean hayMas = filas.size() > size;
+        List<ProductCardRow> pagina = hayMas ? filas.subList(0, size) : filas;
+        String siguiente = null;
+        if (hayMas) {
+            ProductCardRow ultima = pagina.get(pagina.size() - 1);
+            siguiente = CursorCodec.encode(orden, new KeysetPosition(orden.usaPrecio() ? ultima.precio() : null, ultima.id()));
+        }
+        return new CursorPageDTO<>(pagina.stream().map(this::convertToCardDto).collect(Collectors.toList()), siguiente, hayMas);
+    }
+
+
+    // sin cache propia: la respuesta ya serializada la guarda CatalogSnapshots
+    public List<ProductCardDTO> getFeaturedproducts() {
+        return productoRepository.findFeaturedCards() // Busca las tarjetas con campo "destacado" = true
                 .stream()
-                .map(this::convertToDtoResponse)
-                .collect(Collectors.toList());
+                .map(this::convertToCardDto)
+                .toList();
     }
 
 
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public ProductResponseDTO createProducto(ProductDTO productoRequestDTO) {
         CategoryEntity categoria = categoriaRepository.findById(productoRequestDTO.categoria())
                 .orElseThrow(() -> new RuntimeException("Categoria not found"));
         UserEntity userCreador = usuarioService.obtenerUsuarioPeticion();
-        ProductEntity productoCreado = convertToEntity(productoRequestDTO, userCreador, categoria);
-        return convertToDtoResponse(productoRepository.save(productoCreado));
+        ProductEntity productoCreado = productoRepository.save(convertToEntity(productoRequestDTO, userCreador, categoria));
+        eventPublisher.publishEvent(new ProductChangedEvent(productoCreado.getId(), productoCreado, ProductChangedEvent.Tipo.CREADO, null));
+        return convertToDtoResponse(productoCreado);
     }
 
 
     //revisar
 
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public ProductResponseDTO updateProducto(Long id, ProductRequestUpdateDTO productoRequestUpdateDTO) {
-        ProductEntity producto = productoRepository.findById(id).orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+        ProductEntity producto = productoRepository.findConCategoriaYUserById(id).orElseThrow(() -> new RuntimeException("Producto no encontrado"));
         CategoryEntity categoria = categoriaRepository.findById(productoRequestUpdateDTO.categoria())
                 .orElseThrow(() -> new RuntimeException("Categoria not found"));
         UserEntity userCreador = usuarioService.obtenerUsuarioPeticion();
 
-        if (producto.getUser() == userCreador) {
-            producto.setImagen(productoRequestUpdateDTO.imagen());
+        if (esCreador(producto, userCreador)) {
+            Long categoriaAnteriorId = producto.getCategoria().getId();
+            producto.setImagenKey(productoRequestUpdateDTO.imagenKey());
             producto.setDescripcion(productoRequestUpdateDTO.descripcion());
             producto.setDetalles(productoRequestUpdateDTO.detalles());
             producto.setPrecio(productoRequestUpdateDTO.precio());
@@ -118,6 +311,7 @@ public class ProductService {
             producto.setCategoria(categoria);
 
             productoRepository.save(producto);
+            eventPublisher.publishEvent(new ProductChangedEvent(id, producto, ProductChangedEvent.Tipo.ACTUALIZADO, categoriaAnteriorId));
 
             return convertToDtoResponse(producto);
         } else {
@@ -125,53 +319,145 @@ public class ProductService {
         }
     }
 
+    /**
+     * Descuenta stock con un UPDATE condicional en vez de leer, restar y guardar: dos compras simultaneas del
+     * mismo producto no pueden pisarse ni vender mas de lo que hay.
+     *
+     * @return false si no queda stock suficiente
+     */
     public boolean consumeStock(Long id, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("La cantidad a descontar debe ser mayor a 0.");
+        }
+        if (stockLedger.administra(id)) {
+            return stockLedger.descontar(id, quantity);
+        }
+        if (productoRepository.descontarStock(id, quantity) == 0) {
+            if (!productoRepository.existsById(id)) {
+                throw new RuntimeException("Producto no encontrado");
+            }
+            return false;
+        }
+
+        // el UPDATE vacio el contexto de persistencia: se relee el producto para los indices en memoria
         ProductEntity producto = productoRepository.findById(id).orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+        publicarStockAlConfirmar(List.of(producto));
+
+        return true;
+    }
 
-        producto.setStock(producto.getStock() - quantity);
 
-        productoRepository.save(producto);
+    /**
+     * Descuenta el stock de varios productos: primero los que administra el {@link StockLedger} (en memoria, sin tocar
+     * la base), despues los demas con un solo lote de UPDATEs. Asi un producto del ledger sin stock corta el checkout
+     * antes de tomar los locks de fila. Los productos se releen en un solo SELECT y su cambio de stock se publica
+     * cuando confirma la transaccion. Si a alguno no le alcanza devuelve false; los descuentos que si se aplicaron se
+     * deshacen con la transaccion del que llama.
+     */
+    public boolean consumeStock(Map<Long, Integer> cantidades) {
+        if (cantidades.values().stream().anyMatch(cantidad -> cantidad < 1)) {
+            throw new IllegalArgumentException("La cantidad a descontar debe ser mayor a 0.");
+        }
+        TreeMap<Long, Integer> enBase = new TreeMap<>();
+        Map<Long, Integer> enLedger = new TreeMap<>();
+        cantidades.forEach((id, cantidad) -> (stockLedger.administra(id) ? enLedger : enBase).put(id, cantidad));
 
+        for (Map.Entry<Long, Integer> cantidad : enLedger.entrySet()) {
+            if (!stockLedger.descontar(cantidad.getKey(), cantidad.getValue())) {
+                return false;
+            }
+        }
+        if (!enBase.isEmpty()) {
+            if (!productoRepository.descontarStockEnLote(enBase).isEmpty()) {
+                return false;
+            }
+            publicarStockAlConfirmar(productoRepository.findAllById(enBase.keySet()));
+        }
         return true;
     }
 
 
+    // Los indices en memoria no pueden mostrar un descuento que la transaccion despues deshace
+    private void publicarStockAlConfirmar(List<ProductEntity> productos) {
+        Runnable publicar = () -> productos.forEach(producto -> eventPublisher.publishEvent(new ProductChangedEvent(
+                producto.getId(), producto, ProductChangedEvent.Tipo.STOCK, producto.getCategoria().getId())));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publicar.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publicar.run();
+            }
+        });
+    }
+
+
+    /**
+     * Stock vendible del producto sin ir a la base si su detalle esta en cache (se invalida con cada cambio de stock).
+     */
+    public Optional<Integer> getStockVendible(Long id) {
+        return productDetailCache.get(id, this::cargarDetalle).map(producto -> stockLedger.stock(id, producto.stock()));
+    }
+
+
+    /**
+     * Precio actual del producto desde el detalle en cache, para guardarlo en el item al agregarlo al carrito.
+     */
+    public Optional<BigDecimal> getPrecioVendible(Long id) {
+        return productDetailCache.get(id, this::cargarDetalle).map(ProductResponseDTO::precio);
+    }
+
+
+    /**
+     * Stock vendible del producto: el del ledger en memoria si lo administra, si no el de la entidad.
+     */
+    public int getStockActual(ProductEntity producto) {
+        return stockLedger.stock(producto.getId(), producto.getStock());
+    }
+
+
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public boolean deleteProducto(Long id) {
         ProductEntity producto = productoRepository.findById(id).orElseThrow(() -> new RuntimeException("Producto no encontrado"));
         UserEntity userCreador = usuarioService.obtenerUsuarioPeticion();
-        if (producto.getUser() == userCreador) {
+        if (esCreador(producto, userCreador)) {
             productoRepository.deleteById(id);
+            eventPublisher.publishEvent(new ProductChangedEvent(id, null, ProductChangedEvent.Tipo.ELIMINADO, producto.getCategoria().getId()));
             return true;
         }
         return false;
     }
 
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public boolean featureProduct(Long id) {
         ProductEntity producto = productoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
 
         producto.setDestacado(true);
         productoRepository.save(producto);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, producto, ProductChangedEvent.Tipo.DESTACADO, producto.getCategoria().getId()));
 
         return true;
     }
 
 
+    // user es LAZY: se compara por id, que el proxy tiene sin ir a la base
+    private static boolean esCreador(ProductEntity producto, UserEntity user) {
+        return producto.getUser() != null && producto.getUser().getId().equals(user.getId());
+    }
+
+
     private CategoryDTO convertToDto(CategoryEntity categoryEntity) {
         return new CategoryDTO(categoryEntity.getId(), categoryEntity.getNombreCategoria());
     }
 
 
     private ProductResponseDTO convertToDtoResponse(ProductEntity producto) {
-        String base64Image = producto.getImagen();
-        if (base64Image != null) {
-            // Asegúrate de que el tipo de archivo coincida, por ejemplo, 'jpeg', 'png', etc.
-            base64Image = "data:image/jpeg;base64," + base64Image;
-        }
-
         return new ProductResponseDTO(
                 producto.getId(),
-                base64Image,
+                ProductImageService.urlImagen(producto.getId(), producto.getImagenKey(), ImageVariant.DETAIL),
                 producto.getDescripcion(),
                 producto.getPrecio(),
                 producto.getDetalles(),
@@ -182,9 +468,23 @@ public class ProductService {
     }
 
 
+    // Los listados muestran tarjetas chicas, alcanza con la miniatura
+    public ProductCardDTO convertToCardDto(ProductCardRow fila) {
+        return new ProductCardDTO(
+                fila.id(),
+                ProductImageService.urlImagen(fila.id(), fila.imagenKey(), ImageVariant.THUMBNAIL),
+                fila.descripcion(),
+                fila.precio(),
+                fila.stock(),
+                fila.nombreCategoria(),
+                fila.nombreUserVendedor()
+        );
+    }
+
+
     public ProductEntity convertToEntity(ProductDTO productoRequestDTO, UserEntity user, CategoryEntity categoria) {
         return ProductEntity.builder()
-                .imagen(productoRequestDTO.imagen())
+                .imagenKey(productoRequestDTO.imagenKey())
                 .descripcion(productoRequestDTO.descripcion())
                 .precio(productoRequestDTO.precio())
                 .detalles(productoRequestDTO.detalles())
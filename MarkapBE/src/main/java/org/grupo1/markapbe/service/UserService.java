@@ -16,6 +16,11 @@ public class UserService {
 
 
 
+    // Sin ir a la base: el nombre viene del token de la peticion
+    public String obtenerUsernamePeticion() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
     public UserEntity obtenerUsuarioPeticion(){
         String userData = SecurityContextHolder.getContext().getAuthentication().getName();
         return userRepository.findUserEntityByUsername(userData)
@@ -0,0 +1,144 @@
+package org.grupo1.markapbe.service.carrito;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Carrito sin pagar de un usuario, en memoria. Las cantidades se leen y se cambian con el lock del carrito
+ * ({@code synchronized}); lo que todavia no llego a la base queda en {@link #pendientes()} hasta que el
+ * {@link CartStore} lo escribe.
+ * <p>
+ * Cada item guarda el precio unitario que tenia el producto cuando entro al carrito, y el carrito lleva la cantidad
+ * de items, las unidades y el total al dia con cada cambio, asi el resumen no recorre los items.
+ */
+public class CarritoActivo {
+
+    private final String usuario;
+    private final Long id;
+    private final Timestamp updatedAt;
+
+    // producto -> cantidad, en orden de producto
+    private final Map<Long, Integer> items = new TreeMap<>();
+
+    // producto -> precio unitario al agregarlo
+    private final Map<Long, BigDecimal> precios = new HashMap<>();
+
+    // cantidades sin escribir en la base; 0 es borrar el item
+    private final Map<Long, Linea> sinEscribir = new HashMap<>();
+
+    private int unidades;
+    private BigDecimal total = BigDecimal.ZERO;
+
+    // una sola escritura del carrito a la vez: dos a la par insertarian el mismo item dos veces
+    final ReentrantLock escritura = new ReentrantLock();
+
+    private volatile long ultimoUso = System.currentTimeMillis();
+
+    // ya no esta en el store (se pago, se vacio o se desalojo): los cambios tienen que ir al carrito nuevo
+    private boolean cerrado;
+
+
+    CarritoActivo(String usuario, Long id, Timestamp updatedAt, Map<Long, Linea> items) {
+        this.usuario = usuario;
+        this.id = id;
+        this.updatedAt = updatedAt;
+        items.forEach((productoId, linea) -> {
+            BigDecimal precio = Objects.requireNonNullElse(linea.precio(), BigDecimal.ZERO);
+            this.items.put(productoId, linea.cantidad());
+            this.precios.put(productoId, precio);
+            this.unidades += linea.cantidad();
+            this.total = this.total.add(precio.multiply(BigDecimal.valueOf(linea.cantidad())));
+        });
+    }
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public synchronized int cantidad(Long productoId) {
+        return items.getOrDefault(productoId, 0);
+    }
+
+    public synchronized Map<Long, Integer> items() {
+        return new TreeMap<>(items);
+    }
+
+    public synchronized boolean vacio() {
+        return items.isEmpty();
+    }
+
+    public synchronized Resumen resumen() {
+        return new Resumen(items.size(), unidades, total);
+    }
+
+
+    String usuario() {
+        return usuario;
+    }
+
+    long ultimoUso() {
+        return ultimoUso;
+    }
+
+    synchronized boolean cerrado() {
+        return cerrado;
+    }
+
+    synchronized void cerrar() {
+        cerrado = true;
+    }
+
+    // El precio con el que queda el item: el que ya tenia o, si es nuevo, el de ahora
+    synchronized BigDecimal precioItem(Long productoId, BigDecimal precioActual) {
+        if (items.containsKey(productoId)) {
+            return precios.get(productoId);
+        }
+        return precioActual != null ? precioActual : BigDecimal.ZERO;
+    }
+
+    synchronized void poner(Long productoId, int cantidad, BigDecimal precioItem) {
+        int anterior = items.getOrDefault(productoId, 0);
+        unidades += cantidad - anterior;
+        total = total.add(precioItem.multiply(BigDecimal.valueOf(cantidad - anterior)));
+        if (cantidad == 0) {
+            items.remove(productoId);
+            precios.remove(productoId);
+        } else {
+            items.put(productoId, cantidad);
+            precios.put(productoId, precioItem);
+        }
+        sinEscribir.put(productoId, new Linea(cantidad, precioItem));
+        ultimoUso = System.currentTimeMillis();
+    }
+
+    synchronized Map<Long, Linea> pendientes() {
+        return new TreeMap<>(sinEscribir);
+    }
+
+    // Solo se descarta lo escrito que no volvio a cambiar mientras tanto
+    synchronized void escritos(Map<Long, Linea> escritos) {
+        escritos.forEach(sinEscribir::remove);
+    }
+
+    void usar() {
+        ultimoUso = System.currentTimeMillis();
+    }
+
+
+    // Cantidad de un item y su precio unitario al agregarlo
+    record Linea(int cantidad, BigDecimal precio) {
+    }
+
+    public record Resumen(int items, int unidades, BigDecimal total) {
+    }
+}
@@ -0,0 +1,573 @@
+package org.grupo1.markapbe.service.carrito;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.persistence.entity.CarritoEntity;
+import org.grupo1.markapbe.persistence.projection.ItemCantidadRow;
+import org.grupo1.markapbe.persistence.repository.CarritoRepository;
+import org.grupo1.markapbe.persistence.repository.ItemsCarritoRepository;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Carritos activos en memoria, por usuario. Agregar o quitar un producto cambia el {@link CarritoActivo} y anota la
+ * cantidad nueva en un journal en disco, sin tocar la base; un hilo escribe los cambios en carrito/itemsCarrito cada
+ * carrito.store.intervalo, en lotes y con una sola fila por item aunque haya cambiado muchas veces. El checkout y las
+ * lecturas de items escriben antes el carrito del usuario, asi la base esta al dia cuando la consultan.
+ * <p>
+ * El journal guarda cantidades absolutas (carrito, producto, cantidad, precio unitario), asi que volver a aplicarlo no
+ * cambia nada. Los totales de cada carrito (items, unidades y precio) se recalculan en la misma escritura. Se
+ * escribe por segmentos: en cada escritura periodica se abre uno nuevo, se vuelven a anotar en el lo que no se pudo
+ * escribir y se borran los anteriores. Si la aplicacion se cae, al arrancar se aplican los segmentos que quedaron
+ * antes de atender pedidos: se pierde a lo sumo lo que el sistema operativo no llego a bajar a disco.
+ * <p>
+ * La escritura periodica va en un solo lote; si falla, cada carrito se escribe en su propia transaccion, asi un
+ * carrito que no se puede escribir no frena a los demas. Un producto borrado sale de los carritos en memoria (y del
+ * journal, con una cantidad 0); si igual llega a la escritura o al journal, su linea se descarta.
+ * <p>
+ * El store es de cada instancia: los pedidos de carrito de un usuario tienen que llegar siempre a la misma.
+ */
+@Slf4j
+@Component
+public class CartStore {
+
+    private static final String ACTUALIZAR = "UPDATE items_carrito SET amount = ? WHERE carrito_id = ? AND product_id = ?";
+    private static final String INSERTAR = "INSERT INTO items_carrito (id, carrito_id, product_id, amount, precio_unitario) " +
+            "VALUES (nextval('items_carrito_seq'), ?, ?, ?, ?)";
+    private static final String BORRAR = "DELETE FROM items_carrito WHERE carrito_id = ? AND product_id = ?";
+    private static final String BORRAR_VACIO = "DELETE FROM carrito WHERE id = ? AND payment_status = false " +
+            "AND NOT EXISTS (SELECT 1 FROM items_carrito WHERE carrito_id = ?)";
+    private static final String ACTUALIZAR_TOTALES = "UPDATE carrito SET " +
+            "cantidad_items = (SELECT count(*) FROM items_carrito WHERE carrito_id = ?), " +
+            "unidades = (SELECT coalesce(sum(amount), 0) FROM items_carrito WHERE carrito_id = ?), " +
+            "total = (SELECT coalesce(sum(ic.amount * coalesce(ic.precio_unitario, p.precio)), 0) " +
+            "FROM items_carrito ic JOIN products p ON p.id = ic.product_id WHERE ic.carrito_id = ?) " +
+            "WHERE id = ?";
+    private static final String SIN_PAGAR = "SELECT count(*) FROM carrito WHERE id = ? AND payment_status = false";
+    private static final String EXISTE_PRODUCTO = "SELECT count(*) FROM products WHERE id = ?";
+
+    private static final String PREFIJO_SEGMENTO = "carritos-";
+    private static final String SUFIJO_SEGMENTO = ".journal";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private ItemsCarritoRepository itemsCarritoRepository;
+
+    private final TransactionTemplate transaccion;
+    private final Path directorio;
+    private final Duration intervalo;
+    private final Duration inactividad;
+    private final ScheduledExecutorService escritor;
+
+    private final ConcurrentHashMap<String, CarritoActivo> porUsuario = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CarritoActivo> porId = new ConcurrentHashMap<>();
+
+    // segmento abierto del journal y los cerrados que esperan la proxima escritura; se tocan con el lock del journal
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    private long numeroSegmento;
+    private final List<Path> segmentosCerrados = new ArrayList<>();
+
+
+    public CartStore(PlatformTransactionManager transactionManager,
+                     @Value("${carrito.store.journal:./data/carritos}") Path directorio,
+                     @Value("${carrito.store.intervalo:1s}") Duration intervalo,
+                     @Value("${carrito.store.inactividad:30m}") Duration inactividad) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.directorio = directorio;
+        this.intervalo = intervalo;
+        this.inactividad = inactividad;
+        this.escritor = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "carritos-escritor");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+
+    // Recuperacion: lo que quedo en el journal de la ultima ejecucion se aplica antes de abrir el segmento nuevo
+    @PostConstruct
+    public void recuperar() throws IOException {
+        Files.createDirectories(directorio);
+        List<Path> anteriores = segmentos();
+        if (!anteriores.isEmpty()) {
+            reproducir(anteriores);
+        }
+        synchronized (journalLock) {
+            numeroSegmento = anteriores.isEmpty() ? 0 : numero(anteriores.get(anteriores.size() - 1));
+            abrirSegmento();
+        }
+        escritor.scheduleWithFixedDelay(this::escribirPendientes, intervalo.toMillis(), intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Carrito activo del usuario: el de memoria o, la primera vez, el de la base. Si no tiene y {@code crear} no es
+     * null, lo crea con el.
+     */
+    public Optional<CarritoActivo> obtener(String usuario, Supplier<CarritoEntity> crear) {
+        CarritoActivo carrito = porUsuario.get(usuario);
+        if (carrito != null) {
+            carrito.usar();
+            return Optional.of(carrito);
+        }
+        // compute: dos pedidos a la par del mismo usuario no cargan ni crean dos carritos
+        return Optional.ofNullable(porUsuario.compute(usuario, (nombre, actual) -> actual != null ? actual : cargar(nombre, crear)));
+    }
+
+
+    /**
+     * Aplica un cambio al carrito activo del usuario con el lock del carrito tomado. Si mientras tanto el carrito se
+     * cerro (se pago o se vacio) se vuelve a pedir.
+     *
+     * @throws EntityNotFoundException si el usuario no tiene carrito activo y {@code crear} es null
+     */
+    public <T> T modificar(String usuario, Supplier<CarritoEntity> crear, Function<CarritoActivo, T> cambio) {
+        while (true) {
+            CarritoActivo carrito = obtener(usuario, crear)
+                    .orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado."));
+            synchronized (carrito) {
+                if (!carrito.cerrado()) {
+                    return cambio.apply(carrito);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Deja la cantidad del producto en el carrito (0 lo quita). Se llama desde {@link #modificar}; primero se anota
+     * en el journal y despues se cambia la memoria. {@code precio} es el precio actual del producto: solo se usa si
+     * el item es nuevo, uno que ya estaba conserva el suyo.
+     */
+    public void poner(CarritoActivo carrito, Long productoId, int cantidad, BigDecimal precio) {
+        BigDecimal precioItem = carrito.precioItem(productoId, precio);
+        anotar(carrito.getId(), productoId, new CarritoActivo.Linea(cantidad, precioItem));
+        carrito.poner(productoId, cantidad, precioItem);
+    }
+
+
+    /**
+     * Escribe ya el carrito del usuario. Dentro de una transaccion se escribe en ella y el carrito queda tomado hasta
+     * que termina: si se deshace, los cambios siguen pendientes.
+     */
+    public void escribir(String usuario) {
+        CarritoActivo carrito = porUsuario.get(usuario);
+        if (carrito != null) {
+            escribir(List.of(carrito), true);
+        }
+    }
+
+
+    public void escribirCarrito(Long carritoId) {
+        CarritoActivo carrito = porId.get(carritoId);
+        if (carrito != null) {
+            escribir(List.of(carrito), true);
+        }
+    }
+
+
+    /**
+     * Saca del store el carrito del usuario cuando confirma la transaccion (el checkout lo dejo pagado).
+     */
+    public void cerrarAlConfirmar(String usuario) {
+        CarritoActivo carrito = porUsuario.get(usuario);
+        if (carrito == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    quitar(carrito);
+                }
+            });
+        } else {
+            quitar(carrito);
+        }
+    }
+
+
+    /**
+     * Escritura periodica: todos los carritos con cambios en un lote, rotando el journal. Los carritos que esta
+     * escribiendo otro hilo (un checkout) quedan para la proxima, igual que los que no se pudieron escribir.
+     */
+    public void escribirPendientes() {
+        try {
+            synchronized (journalLock) {
+                journal.close();
+                segmentosCerrados.add(segmento(numeroSegmento));
+                abrirSegmento();
+            }
+            List<CarritoActivo> vacios = escribirTodos(List.copyOf(porId.values()));
+            borrarVacios(vacios);
+            reanotarPendientes();
+            synchronized (journalLock) {
+                for (Path cerrado : segmentosCerrados) {
+                    Files.deleteIfExists(cerrado);
+                }
+                segmentosCerrados.clear();
+            }
+            desalojarInactivos();
+        } catch (IOException | RuntimeException e) {
+            // lo pendiente sigue en memoria y en el journal: se reintenta en el proximo intervalo
+            log.error("Error al escribir los carritos", e);
+        }
+    }
+
+
+    // Un producto borrado sale de los carritos: la cantidad 0 queda en el journal, asi tampoco vuelve al reproducirlo
+    @EventListener
+    public void onProductChanged(ProductChangedEvent evento) {
+        if (evento.tipo() != ProductChangedEvent.Tipo.ELIMINADO) {
+            return;
+        }
+        for (CarritoActivo carrito : porId.values()) {
+            quitarProducto(carrito, evento.productoId());
+        }
+    }
+
+
+    @PreDestroy
+    public void cerrar() throws IOException {
+        escritor.shutdown();
+        escribirPendientes();
+        synchronized (journalLock) {
+            journal.close();
+            // si todo llego a la base el segmento quedo vacio y no hace falta para arrancar
+            if (Files.size(segmento(numeroSegmento)) == 0) {
+                Files.delete(segmento(numeroSegmento));
+            }
+        }
+    }
+
+
+    private List<CarritoActivo> escribirTodos(List<CarritoActivo> carritos) {
+        try {
+            return escribir(carritos, false);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo escribir el lote de carritos, se escriben de a uno", e);
+        }
+        List<CarritoActivo> vacios = new ArrayList<>();
+        for (CarritoActivo carrito : carritos) {
+            try {
+                vacios.addAll(escribir(List.of(carrito), false));
+            } catch (RuntimeException e) {
+                // el caso conocido: un item de un producto que se borro antes de que llegara el evento
+                if (!descartarProductosBorrados(carrito)) {
+                    log.error("No se pudo escribir el carrito {}", carrito.getId(), e);
+                    continue;
+                }
+                try {
+                    vacios.addAll(escribir(List.of(carrito), false));
+                } catch (RuntimeException ex) {
+                    log.error("No se pudo escribir el carrito {}", carrito.getId(), ex);
+                }
+            }
+        }
+        return vacios;
+    }
+
+
+    private boolean descartarProductosBorrados(CarritoActivo carrito) {
+        List<Long> borrados = carrito.pendientes().entrySet().stream()
+                .filter(linea -> linea.getValue().cantidad() > 0 && !existeProducto(linea.getKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        borrados.forEach(productoId -> quitarProducto(carrito, productoId));
+        return !borrados.isEmpty();
+    }
+
+
+    private void quitarProducto(CarritoActivo carrito, Long productoId) {
+        synchronized (carrito) {
+            if (!carrito.cerrado() && carrito.cantidad(productoId) > 0) {
+                poner(carrito, productoId, 0, null);
+            }
+        }
+    }
+
+
+    private boolean existeProducto(Long productoId) {
+        return jdbcTemplate.queryForObject(EXISTE_PRODUCTO, Integer.class, productoId) > 0;
+    }
+
+
+    // Devuelve los carritos que quedaron vacios y se cerraron: falta borrar su fila
+    private List<CarritoActivo> escribir(List<CarritoActivo> carritos, boolean esperar) {
+        Map<CarritoActivo, Map<Long, CarritoActivo.Linea>> cambios = new LinkedHashMap<>();
+        for (CarritoActivo carrito : carritos) {
+            if (esperar) {
+                carrito.escritura.lock();
+            } else if (!carrito.escritura.tryLock()) {
+                continue;
+            }
+            Map<Long, CarritoActivo.Linea> pendientes = carrito.pendientes();
+            if (pendientes.isEmpty()) {
+                carrito.escritura.unlock();
+            } else {
+                cambios.put(carrito, pendientes);
+            }
+        }
+        if (cambios.isEmpty()) {
+            return List.of();
+        }
+
+        boolean enTransaccion = TransactionSynchronizationManager.isSynchronizationActive();
+        try {
+            transaccion.executeWithoutResult(status -> aplicar(cambios.entrySet().stream()
+                    .collect(Collectors.toMap(cambio -> cambio.getKey().getId(), Map.Entry::getValue))));
+        } catch (RuntimeException e) {
+            cambios.keySet().forEach(carrito -> carrito.escritura.unlock());
+            throw e;
+        }
+
+        if (enTransaccion) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        confirmar(cambios);
+                    } else {
+                        cambios.keySet().forEach(carrito -> carrito.escritura.unlock());
+                    }
+                }
+            });
+            return List.of();
+        }
+        return confirmar(cambios);
+    }
+
+
+    private List<CarritoActivo> confirmar(Map<CarritoActivo, Map<Long, CarritoActivo.Linea>> cambios) {
+        List<CarritoActivo> vacios = new ArrayList<>();
+        cambios.forEach((carrito, escritos) -> {
+            try {
+                carrito.escritos(escritos);
+                // un carrito vacio se cierra en memoria antes de borrar su fila: un cambio nuevo ya va a otro carrito
+                synchronized (carrito) {
+                    if (carrito.vacio() && carrito.pendientes().isEmpty()) {
+                        quitar(carrito);
+                        vacios.add(carrito);
+                    }
+                }
+            } finally {
+                carrito.escritura.unlock();
+            }
+        });
+        return vacios;
+    }
+
+
+    private void aplicar(Map<Long, Map<Long, CarritoActivo.Linea>> cambios) {
+        List<Object[]> actualizar = new ArrayList<>();
+        List<BigDecimal> precios = new ArrayList<>();
+        List<Object[]> borrar = new ArrayList<>();
+        cambios.forEach((carritoId, items) -> items.forEach((productoId, linea) -> {
+            if (linea.cantidad() > 0) {
+                actualizar.add(new Object[]{linea.cantidad(), carritoId, productoId});
+                precios.add(linea.precio());
+            } else {
+                borrar.add(new Object[]{carritoId, productoId});
+            }
+        }));
+        if (!actualizar.isEmpty()) {
+            int[] filas = jdbcTemplate.batchUpdate(ACTUALIZAR, actualizar);
+            List<Object[]> insertar = new ArrayList<>();
+            for (int i = 0; i < filas.length; i++) {
+                if (filas[i] == 0) {
+                    Object[] item = actualizar.get(i);
+                    insertar.add(new Object[]{item[1], item[2], item[0], precios.get(i)});
+                }
+            }
+            if (!insertar.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERTAR, insertar);
+            }
+        }
+        if (!borrar.isEmpty()) {
+            jdbcTemplate.batchUpdate(BORRAR, borrar);
+        }
+        jdbcTemplate.batchUpdate(ACTUALIZAR_TOTALES, cambios.keySet().stream()
+                .map(carritoId -> new Object[]{carritoId, carritoId, carritoId, carritoId})
+                .toList());
+    }
+
+
+    private void borrarVacios(List<CarritoActivo> vacios) {
+        if (!vacios.isEmpty()) {
+            jdbcTemplate.batchUpdate(BORRAR_VACIO, vacios.stream()
+                    .map(carrito -> new Object[]{carrito.getId(), carrito.getId()})
+                    .toList());
+        }
+    }
+
+
+    private CarritoActivo cargar(String usuario, Supplier<CarritoEntity> crear) {
+        Optional<CarritoEntity> entidad = carritoRepository.findActiveCarritoByUsername(usuario);
+        if (entidad.isEmpty() && crear != null) {
+            entidad = Optional.of(crear.get());
+        }
+        return entidad.map(carrito -> {
+            Map<Long, CarritoActivo.Linea> items = itemsCarritoRepository.findCantidadesByCarritoId(carrito.getId()).stream()
+                    .collect(Collectors.toMap(ItemCantidadRow::productoId,
+                            item -> new CarritoActivo.Linea(item.amount(), item.precioUnitario())));
+            CarritoActivo activo = new CarritoActivo(usuario, carrito.getId(), carrito.getUpdatedAt(), items);
+            porId.put(activo.getId(), activo);
+            return activo;
+        }).orElse(null);
+    }
+
+
+    private void quitar(CarritoActivo carrito) {
+        carrito.cerrar();
+        porUsuario.remove(carrito.usuario(), carrito);
+        porId.remove(carrito.getId(), carrito);
+    }
+
+
+    private void desalojarInactivos() {
+        long limite = System.currentTimeMillis() - inactividad.toMillis();
+        for (CarritoActivo carrito : porId.values()) {
+            synchronized (carrito) {
+                if (carrito.ultimoUso() < limite && carrito.pendientes().isEmpty()) {
+                    quitar(carrito);
+                }
+            }
+        }
+    }
+
+
+    private void anotar(Long carritoId, Long productoId, CarritoActivo.Linea item) {
+        byte[] linea = (carritoId + " " + productoId + " " + item.cantidad() + " " + item.precio().toPlainString() + "\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        synchronized (journalLock) {
+            try {
+                journal.write(ByteBuffer.wrap(linea));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo anotar el cambio del carrito", e);
+            }
+        }
+    }
+
+
+    // Lo que sigue sin escribir se copia al segmento nuevo, asi se pueden borrar los anteriores
+    private void reanotarPendientes() {
+        for (CarritoActivo carrito : porId.values()) {
+            synchronized (carrito) {
+                carrito.pendientes().forEach((productoId, linea) -> anotar(carrito.getId(), productoId, linea));
+            }
+        }
+    }
+
+
+    private void reproducir(List<Path> segmentos) throws IOException {
+        // la ultima cantidad anotada de cada item es la que vale
+        Map<Long, Map<Long, CarritoActivo.Linea>> ultimas = new LinkedHashMap<>();
+        for (Path segmento : segmentos) {
+            String contenido = Files.readString(segmento, StandardCharsets.US_ASCII);
+            List<String> lineas = new ArrayList<>(List.of(contenido.split("\n")));
+            if (!contenido.endsWith("\n") && !lineas.isEmpty()) {
+                lineas.remove(lineas.size() - 1); // la ultima linea quedo a medio escribir
+            }
+            for (String linea : lineas) {
+                String[] campos = linea.trim().split(" ");
+                if (campos.length != 4) {
+                    log.warn("Linea corrupta en el journal de carritos {}, se ignora: {}", segmento, linea);
+                    continue;
+                }
+                ultimas.computeIfAbsent(Long.parseLong(campos[0]), id -> new HashMap<>())
+                        .put(Long.parseLong(campos[1]), new CarritoActivo.Linea(Integer.parseInt(campos[2]),
+                                new BigDecimal(campos[3])));
+            }
+        }
+        transaccion.executeWithoutResult(status -> {
+            // los carritos que ya se pagaron o se borraron no se tocan, ni los items de productos que ya no existen
+            ultimas.keySet().removeIf(carritoId -> jdbcTemplate.queryForObject(SIN_PAGAR, Integer.class, carritoId) == 0);
+            Set<Long> borrados = ultimas.values().stream()
+                    .flatMap(items -> items.keySet().stream())
+                    .distinct()
+                    .filter(productoId -> !existeProducto(productoId))
+                    .collect(Collectors.toSet());
+            ultimas.values().forEach(items -> items.keySet().removeAll(borrados));
+            aplicar(ultimas);
+            jdbcTemplate.batchUpdate(BORRAR_VACIO, ultimas.keySet().stream()
+                    .map(carritoId -> new Object[]{carritoId, carritoId})
+                    .toList());
+        });
+        for (Path segmento : segmentos) {
+            Files.delete(segmento);
+        }
+        log.info("Journal de carritos aplicado: {} carritos de {} segmentos", ultimas.size(), segmentos.size());
+    }
+
+
+    private List<Path> segmentos() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.filter(archivo -> {
+                        String nombre = archivo.getFileName().toString();
+                        return nombre.startsWith(PREFIJO_SEGMENTO) && nombre.endsWith(SUFIJO_SEGMENTO);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+
+    private void abrirSegmento() throws IOException {
+        numeroSegmento++;
+        journal = FileChannel.open(segmento(numeroSegmento), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+
+    private Path segmento(long numero) {
+        return directorio.resolve(PREFIJO_SEGMENTO + String.format("%012d", numero) + SUFIJO_SEGMENTO);
+    }
+
+
+    private static long numero(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO_SEGMENTO.length(), nombre.length() - SUFIJO_SEGMENTO.length()));
+    }
+}
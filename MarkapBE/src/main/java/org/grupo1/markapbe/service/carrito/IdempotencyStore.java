@@ -0,0 +1,83 @@
+package org.grupo1.markapbe.service.carrito;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Respuestas de las peticiones del carrito con Idempotency-Key, por usuario y clave, en memoria y con vencimiento
+ * (carrito.idempotencia.ttl). La primera peticion con una clave registra su {@link Ejecucion}; los reintentos
+ * esperan su resultado en vez de ejecutarse de nuevo. Si la primera no termina bien su ejecucion se descarta y el
+ * siguiente reintento corre como si fuera el primero.
+ */
+@Component
+public class IdempotencyStore {
+
+    private final Cache<Clave, Ejecucion> ejecuciones;
+
+
+    public IdempotencyStore(@Value("${carrito.idempotencia.ttl:24h}") Duration ttl,
+                            @Value("${carrito.idempotencia.max-entradas:100000}") long maxEntradas) {
+        this.ejecuciones = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntradas)
+                .build();
+    }
+
+
+    /**
+     * Registra la ejecucion si la clave esta libre.
+     *
+     * @return la ejecucion que ya tenia la clave, o null si quedo registrada {@code nueva}
+     */
+    public Ejecucion registrar(Clave clave, Ejecucion nueva) {
+        return ejecuciones.asMap().putIfAbsent(clave, nueva);
+    }
+
+
+    public void completar(Ejecucion ejecucion, Respuesta respuesta) {
+        ejecucion.respuesta.complete(respuesta);
+    }
+
+
+    // Los que esperaban reciben null y vuelven a intentar registrarse
+    public void descartar(Clave clave, Ejecucion ejecucion) {
+        ejecuciones.asMap().remove(clave, ejecucion);
+        ejecucion.respuesta.complete(null);
+    }
+
+
+    public record Clave(String usuario, String idempotencyKey) {
+    }
+
+    public record Respuesta(int status, String contentType, Map<String, List<String>> headers, byte[] cuerpo) {
+    }
+
+    /**
+     * Una peticion en curso o terminada. La huella (metodo, ruta y parametros) evita devolver la respuesta de otra
+     * peticion que reuso la misma clave.
+     */
+    public static final class Ejecucion {
+
+        private final String huella;
+        private final CompletableFuture<Respuesta> respuesta = new CompletableFuture<>();
+
+        public Ejecucion(String huella) {
+            this.huella = huella;
+        }
+
+        public String huella() {
+            return huella;
+        }
+
+        public CompletableFuture<Respuesta> respuesta() {
+            return respuesta;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.grupo1.markapbe.service.event;
+
+/**
+ * Lo publica la importacion masiva al terminar. Las filas se escriben por JDBC en lotes, sin un
+ * {@link ProductChangedEvent} por producto, asi que los indices y caches del catalogo se rearman enteros.
+ */
+public record CatalogImportedEvent(long creados, long actualizados) {
+}
@@ -0,0 +1,21 @@
+package org.grupo1.markapbe.service.event;
+
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+
+/**
+ * Lo publica ProductService despues de cada escritura sobre un producto, para que los indices y caches
+ * en memoria del catalogo se actualicen sin que el servicio los conozca uno por uno.
+ *
+ * @param producto            estado actual del producto, null cuando fue eliminado
+ * @param categoriaAnteriorId categoria que tenia el producto antes de la escritura, null en el alta
+ */
+public record ProductChangedEvent(Long productoId, ProductEntity producto, Tipo tipo, Long categoriaAnteriorId) {
+
+    public enum Tipo {
+        CREADO,
+        ACTUALIZADO,
+        ELIMINADO,
+        DESTACADO,
+        STOCK
+    }
+}
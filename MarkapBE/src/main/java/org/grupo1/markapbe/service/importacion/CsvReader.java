@@ -0,0 +1,113 @@
+package org.grupo1.markapbe.service.importacion;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector CSV (RFC 4180) que devuelve un registro por vez, asi el archivo se procesa a medida que llega.
+ * Soporta campos entre comillas con comas, saltos de linea y comillas escapadas ("").
+ */
+public class CsvReader {
+
+    private final Reader entrada;
+    private final char separador;
+    private boolean inicio = true;
+    private boolean fin;
+
+    // el caracter leido de mas al mirar si una comilla estaba escapada
+    private int pendiente = -2;
+
+
+    public CsvReader(Reader entrada, char separador) {
+        this.entrada = entrada;
+        this.separador = separador;
+    }
+
+
+    /**
+     * El siguiente registro, o null al final del archivo. Las lineas vacias se saltean.
+     *
+     * @throws IllegalArgumentException si un campo entre comillas no se cierra
+     */
+    public List<String> siguiente() throws IOException {
+        while (!fin) {
+            List<String> registro = leerRegistro();
+            if (registro != null && !(registro.size() == 1 && registro.get(0).isEmpty())) {
+                return registro;
+            }
+        }
+        return null;
+    }
+
+
+    private List<String> leerRegistro() throws IOException {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        boolean leyoAlgo = false;
+
+        while (true) {
+            int c = leer();
+            if (c == -1) {
+                fin = true;
+                if (entreComillas) {
+                    throw new IllegalArgumentException("El CSV termina dentro de un campo entre comillas.");
+                }
+                if (!leyoAlgo) {
+                    return null;
+                }
+                campos.add(campo.toString());
+                return campos;
+            }
+            leyoAlgo = true;
+            if (entreComillas) {
+                if (c == '"') {
+                    int siguiente = leer();
+                    if (siguiente == '"') {
+                        campo.append('"');
+                    } else {
+                        entreComillas = false;
+                        pendiente = siguiente;
+                    }
+                } else {
+                    campo.append((char) c);
+                }
+            } else if (c == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    int siguiente = leer();
+                    if (siguiente != '\n') {
+                        pendiente = siguiente;
+                    }
+                }
+                campos.add(campo.toString());
+                return campos;
+            } else {
+                campo.append((char) c);
+            }
+        }
+    }
+
+
+    private int leer() throws IOException {
+        if (pendiente != -2) {
+            int c = pendiente;
+            pendiente = -2;
+            return c;
+        }
+        int c = entrada.read();
+        if (inicio) {
+            inicio = false;
+            if (c == '\uFEFF') { // BOM que agregan algunas planillas al exportar
+                c = entrada.read();
+            }
+        }
+        return c;
+    }
+}
@@ -0,0 +1,280 @@
+package org.grupo1.markapbe.service.inventario;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.entity.StockJournalEntity;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.persistence.repository.StockJournalRepository;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ledger de stock en memoria para los productos calientes de una promocion. Con la base, cada compra de un producto
+ * espera el lock de su fila en Products; en el ledger el stock vive en un {@link StripedStock} y se descuenta sin
+ * locks. Los productos se suman con {@link #activar} o con inventario.ledger.productos al arrancar; los demas siguen
+ * descontando en la base.
+ * <p>
+ * Cada venta deja una fila en StockJournal dentro de la transaccion de la compra (un INSERT, sin pelear por la fila
+ * del producto). Un hilo aplica el journal a Products cada inventario.ledger.intervalo, en un lote por vez: borra las
+ * filas y descuenta su suma en la misma transaccion, asi ninguna se aplica dos veces. El journal es tambien la
+ * recuperacion: si la aplicacion se cae, lo vendido y no aplicado sigue ahi y se aplica al arrancar, antes de volver a
+ * cargar el ledger. El stock de Products (y los indices del catalogo) queda atrasado hasta el proximo lote.
+ * <p>
+ * El ledger es de cada instancia, como las reservas: un producto activo tiene que venderse desde una sola.
+ */
+@Slf4j
+@Component
+public class StockLedger {
+
+    private static final String PENDIENTES = "SELECT id, id_producto, cantidad FROM stock_journal ORDER BY id LIMIT ?";
+    private static final String BORRAR = "DELETE FROM stock_journal WHERE id = ?";
+    private static final String DESCONTAR = "UPDATE Products SET stock = stock - ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productoRepository;
+
+    @Autowired
+    private StockJournalRepository stockJournalRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${inventario.ledger.lote:1000}")
+    private int tamanioLote;
+
+    private final TransactionTemplate transaccion;
+
+    private final int franjas;
+
+    private final List<Long> productosIniciales;
+
+    private final ScheduledExecutorService escritor;
+
+    private final ConcurrentHashMap<Long, StripedStock> stocks = new ConcurrentHashMap<>();
+
+    // hay ventas confirmadas en el journal que esta instancia todavia no aplico
+    private final AtomicBoolean hayPendientes = new AtomicBoolean();
+
+
+    public StockLedger(PlatformTransactionManager transactionManager,
+                       @Value("${inventario.ledger.productos:}") List<Long> productosIniciales,
+                       @Value("${inventario.ledger.franjas:16}") int franjas,
+                       @Value("${inventario.ledger.intervalo:500ms}") Duration intervalo) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.productosIniciales = productosIniciales;
+        this.franjas = franjas;
+        this.escritor = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "ledger-escritor");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        escritor.scheduleWithFixedDelay(this::escribir, intervalo.toMillis(), intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    // Recuperacion: lo que quedo en el journal se aplica antes de cargar el stock de los productos
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        aplicarJournal();
+        productosIniciales.forEach(this::activar);
+    }
+
+
+    /**
+     * Pasa el stock del producto al ledger: su stock en Products menos lo vendido que todavia esta en el journal.
+     */
+    public void activar(Long productoId) {
+        stocks.computeIfAbsent(productoId, id -> new StripedStock(stockConfirmado(id), franjas));
+    }
+
+
+    /**
+     * Devuelve el producto a la base: deja de descontarse en memoria y se aplica el journal para que Products quede al dia.
+     */
+    public void desactivar(Long productoId) {
+        if (stocks.remove(productoId) != null) {
+            aplicarJournal();
+        }
+    }
+
+
+    public boolean administra(Long productoId) {
+        return stocks.containsKey(productoId);
+    }
+
+
+    /**
+     * Stock actual del producto: el del ledger si lo administra, si no el de la base.
+     */
+    public int stock(Long productoId, int stockBase) {
+        StripedStock stock = stocks.get(productoId);
+        return stock == null ? stockBase : stock.total();
+    }
+
+
+    /**
+     * Descuenta del ledger y anota la venta en el journal, dentro de la transaccion del que llama. Si la transaccion
+     * se deshace, las unidades vuelven al ledger.
+     *
+     * @return false si no hay stock suficiente
+     */
+    public boolean descontar(Long productoId, int cantidad) {
+        StripedStock stock = stocks.get(productoId);
+        if (stock == null) {
+            throw new IllegalStateException("El producto " + productoId + " no esta en el ledger de stock");
+        }
+        if (!stock.tomar(cantidad)) {
+            return false;
+        }
+        boolean enTransaccion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (enTransaccion) {
+            stock.marcarEnCurso(cantidad);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    stock.terminarEnCurso(cantidad);
+                    if (status == STATUS_COMMITTED) {
+                        hayPendientes.set(true);
+                    } else {
+                        stock.devolver(cantidad);
+                    }
+                }
+            });
+        }
+        try {
+            stockJournalRepository.save(StockJournalEntity.builder()
+                    .productoId(productoId)
+                    .cantidad(cantidad)
+                    .build());
+        } catch (RuntimeException e) {
+            if (!enTransaccion) {
+                stock.devolver(cantidad);
+            }
+            throw e;
+        }
+        if (!enTransaccion) {
+            hayPendientes.set(true);
+        }
+        return true;
+    }
+
+
+    /**
+     * Aplica a Products todo lo que hay en el journal, de a inventario.ledger.lote filas por transaccion, y publica
+     * el cambio de stock de los productos tocados.
+     */
+    public void aplicarJournal() {
+        int leidas;
+        do {
+            List<Long> productos = new ArrayList<>();
+            leidas = transaccion.execute(status -> {
+                List<long[]> filas = jdbcTemplate.query(PENDIENTES,
+                        (rs, i) -> new long[]{rs.getLong("id"), rs.getLong("id_producto"), rs.getInt("cantidad")}, tamanioLote);
+                if (filas.isEmpty()) {
+                    return 0;
+                }
+                // el DELETE toma el lock de cada fila: si otra instancia la aplico primero, aca borra 0 y no se suma
+                int[] borradas = jdbcTemplate.batchUpdate(BORRAR, filas.stream().map(fila -> new Object[]{fila[0]}).toList());
+                Map<Long, Integer> descuentos = new TreeMap<>();
+                for (int i = 0; i < filas.size(); i++) {
+                    if (borradas[i] != 0) {
+                        descuentos.merge(filas.get(i)[1], (int) filas.get(i)[2], Integer::sum);
+                    }
+                }
+                if (descuentos.isEmpty()) {
+                    return filas.size();
+                }
+                jdbcTemplate.batchUpdate(DESCONTAR, descuentos.entrySet().stream()
+                        .map(descuento -> new Object[]{descuento.getValue(), descuento.getKey()}).toList());
+                productos.addAll(descuentos.keySet());
+                return filas.size();
+            });
+            for (ProductEntity producto : productoRepository.findAllById(productos)) {
+                eventPublisher.publishEvent(new ProductChangedEvent(producto.getId(), producto, ProductChangedEvent.Tipo.STOCK,
+                        producto.getCategoria().getId()));
+            }
+        } while (leidas == tamanioLote);
+    }
+
+
+    // Una edicion fija el stock de Products; las ventas del journal se le descuentan igual al aplicarse. El stock se
+    // ajusta en las mismas franjas: las compras en curso devuelven sus unidades ahi si se deshacen
+    @EventListener
+    public void onProductChanged(ProductChangedEvent evento) {
+        StripedStock stock = stocks.get(evento.productoId());
+        if (stock == null) {
+            return;
+        }
+        switch (evento.tipo()) {
+            case ACTUALIZADO -> stock.ajustar(Math.max(0, evento.producto().getStock() - pendiente(evento.productoId())));
+            case ELIMINADO -> stocks.remove(evento.productoId());
+            default -> {
+            }
+        }
+    }
+
+
+    @EventListener(CatalogImportedEvent.class)
+    public void onCatalogImported() {
+        stocks.forEach((id, stock) -> stock.ajustar(stockConfirmado(id)));
+    }
+
+
+    @PreDestroy
+    public void cerrar() {
+        escritor.shutdown();
+        escribir();
+    }
+
+
+    private void escribir() {
+        if (!hayPendientes.getAndSet(false)) {
+            return;
+        }
+        try {
+            aplicarJournal();
+        } catch (RuntimeException e) {
+            // queda en el journal: se reintenta en el proximo intervalo
+            hayPendientes.set(true);
+            log.error("Error al aplicar el journal de stock", e);
+        }
+    }
+
+
+    private int stockConfirmado(Long productoId) {
+        int stock = productoRepository.findStockById(productoId)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+        return Math.max(0, stock - pendiente(productoId));
+    }
+
+
+    private int pendiente(Long productoId) {
+        return (int) stockJournalRepository.sumPendienteByProductoId(productoId);
+    }
+}
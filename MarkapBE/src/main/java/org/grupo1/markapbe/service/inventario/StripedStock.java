@@ -0,0 +1,132 @@
+package org.grupo1.markapbe.service.inventario;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stock de un producto repartido en franjas que se descuentan con CAS, sin locks. Cada hilo empieza por una franja
+ * al azar, asi las compras simultaneas del mismo producto casi nunca pelean por la misma celda. Ninguna franja baja
+ * de cero: un CAS solo resta si la franja tiene suficiente.
+ * <p>
+ * Cuando queda poco stock puede que ninguna franja sola alcance: entonces se junta de varias y, si entre todas no
+ * alcanza, se devuelve lo tomado. Mientras tanto otro hilo puede ver menos stock del que hay y rechazar una compra
+ * que entraba justo; solo pasa con las ultimas unidades.
+ * <p>
+ * Las unidades tomadas por transacciones que todavia no terminaron se cuentan aparte (en curso): una edicion del
+ * stock ajusta las franjas sin contarlas, y al terminar esas transacciones las unidades vuelven o quedan vendidas.
+ */
+class StripedStock {
+
+    // 16 ints = 64 bytes: cada franja en su propia linea de cache, sin false sharing entre nucleos
+    private static final int SEPARACION = 16;
+
+    private final int franjas;
+    private final AtomicIntegerArray celdas;
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+
+    StripedStock(int stock, int franjas) {
+        this.franjas = franjas;
+        this.celdas = new AtomicIntegerArray(franjas * SEPARACION);
+        for (int franja = 0; franja < franjas; franja++) {
+            celdas.set(franja * SEPARACION, stock / franjas + (franja < stock % franjas ? 1 : 0));
+        }
+    }
+
+
+    boolean tomar(int cantidad) {
+        int inicio = ThreadLocalRandom.current().nextInt(franjas);
+        for (int k = 0; k < franjas; k++) {
+            int celda = ((inicio + k) % franjas) * SEPARACION;
+            int valor;
+            while ((valor = celdas.get(celda)) >= cantidad) {
+                if (celdas.compareAndSet(celda, valor, valor - cantidad)) {
+                    return true;
+                }
+            }
+        }
+        return juntar(inicio, cantidad);
+    }
+
+
+    void devolver(int cantidad) {
+        celdas.addAndGet(ThreadLocalRandom.current().nextInt(franjas) * SEPARACION, cantidad);
+    }
+
+
+    void marcarEnCurso(int cantidad) {
+        enCurso.addAndGet(cantidad);
+    }
+
+
+    void terminarEnCurso(int cantidad) {
+        enCurso.addAndGet(-cantidad);
+    }
+
+
+    /**
+     * Lleva las franjas a {@code stock} menos lo que esta en curso, sin reemplazarlas: las transacciones abiertas
+     * devuelven sus unidades sobre estas mismas franjas.
+     */
+    void ajustar(int stock) {
+        int diferencia = Math.max(0, stock - enCurso.get()) - total();
+        if (diferencia > 0) {
+            devolver(diferencia);
+        } else if (diferencia < 0) {
+            quitar(-diferencia);
+        }
+    }
+
+
+    int total() {
+        int total = 0;
+        for (int franja = 0; franja < franjas; franja++) {
+            total += celdas.get(franja * SEPARACION);
+        }
+        return total;
+    }
+
+
+    // Saca hasta {@code cantidad} sin dejar franjas negativas; si las compras se llevaron el resto, saca lo que hay
+    private void quitar(int cantidad) {
+        int faltan = cantidad;
+        for (int franja = 0; franja < franjas && faltan > 0; franja++) {
+            int valor;
+            while ((valor = celdas.get(franja * SEPARACION)) > 0) {
+                int parte = Math.min(valor, faltan);
+                if (celdas.compareAndSet(franja * SEPARACION, valor, valor - parte)) {
+                    faltan -= parte;
+                    break;
+                }
+            }
+        }
+    }
+
+
+    private boolean juntar(int inicio, int cantidad) {
+        int[] tomado = new int[franjas];
+        int faltan = cantidad;
+        for (int k = 0; k < franjas && faltan > 0; k++) {
+            int franja = (inicio + k) % franjas;
+            int valor;
+            while ((valor = celdas.get(franja * SEPARACION)) > 0) {
+                int parte = Math.min(valor, faltan);
+                if (celdas.compareAndSet(franja * SEPARACION, valor, valor - parte)) {
+                    tomado[franja] += parte;
+                    faltan -= parte;
+                    break;
+                }
+            }
+        }
+        if (faltan == 0) {
+            return true;
+        }
+        for (int franja = 0; franja < franjas; franja++) {
+            if (tomado[franja] > 0) {
+                celdas.addAndGet(franja * SEPARACION, tomado[franja]);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,193 @@
+package org.grupo1.markapbe.service.pedido;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.service.CarritoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout asincronico: el pedido entra en una cola acotada (checkout.cola.capacidad) y el cliente recibe un ticket
+ * enseguida; una cantidad fija de workers (checkout.workers) saca los pedidos de a lotes y hace el mismo checkout que
+ * PUT /carrito/actual/paid, cada pedido en su propia transaccion. Asi un pico de compras usa a lo sumo una conexion
+ * por worker y no ocupa los hilos de Tomcat que atienden el catalogo.
+ * <p>
+ * Con la cola llena no se encola nada: el controller responde 429 con Retry-After. Un usuario tiene a lo sumo un
+ * pedido pendiente; volver a pedir el checkout devuelve el mismo ticket. Los tickets se guardan en memoria con
+ * vencimiento (checkout.tickets.ttl), asi que son de cada instancia como el carrito.
+ */
+@Slf4j
+@Component
+public class CheckoutQueue {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    private final BlockingQueue<PedidoCheckout> cola;
+    private final int workers;
+    private final int lote;
+    private final Duration retryAfter;
+    private final Cache<String, PedidoCheckout> tickets;
+    private final ConcurrentHashMap<String, PedidoCheckout> pendientesPorUsuario = new ConcurrentHashMap<>();
+    private final List<Thread> hilos = new ArrayList<>();
+
+    private volatile boolean detenido;
+
+
+    public CheckoutQueue(@Value("${checkout.cola.capacidad:500}") int capacidad,
+                         @Value("${checkout.workers:4}") int workers,
+                         @Value("${checkout.lote:20}") int lote,
+                         @Value("${checkout.retry-after:2s}") Duration retryAfter,
+                         @Value("${checkout.tickets.ttl:1h}") Duration ttlTickets) {
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.workers = workers;
+        this.lote = lote;
+        this.retryAfter = retryAfter;
+        this.tickets = Caffeine.newBuilder()
+                .expireAfterWrite(ttlTickets)
+                .build();
+    }
+
+
+    @PostConstruct
+    public void iniciar() {
+        for (int i = 0; i < workers; i++) {
+            Thread hilo = new Thread(this::trabajar, "checkout-worker-" + i);
+            hilo.setDaemon(true);
+            hilo.start();
+            hilos.add(hilo);
+        }
+    }
+
+
+    /**
+     * Encola el checkout del carrito activo del usuario de la peticion.
+     *
+     * @return el pedido (el que ya tenia pendiente, si tenia uno), o vacio si la cola esta llena
+     * @throws jakarta.persistence.EntityNotFoundException si el usuario no tiene carrito activo
+     */
+    public Optional<PedidoCheckout> encolar() {
+        // detenido primero: un servicio que se apaga no consulta (ni crea) el carrito
+        if (detenido) {
+            return Optional.empty();
+        }
+        Authentication usuario = SecurityContextHolder.getContext().getAuthentication();
+        Long carritoId = carritoService.getActiveCarritoDTO().id();
+        // compute: dos pedidos a la par del mismo usuario no encolan dos checkouts
+        return Optional.ofNullable(pendientesPorUsuario.compute(usuario.getName(), (nombre, pendiente) -> {
+            if (pendiente != null) {
+                return pendiente;
+            }
+            PedidoCheckout nuevo = new PedidoCheckout(UUID.randomUUID().toString(), usuario, carritoId);
+            if (!cola.offer(nuevo)) {
+                return null;
+            }
+            tickets.put(nuevo.getTicket(), nuevo);
+            return nuevo;
+        }));
+    }
+
+
+    // Solo el usuario que lo encolo puede ver su pedido
+    public Optional<PedidoCheckout> buscar(String ticket, String username) {
+        return Optional.ofNullable(tickets.getIfPresent(ticket))
+                .filter(pedido -> pedido.getUsername().equals(username));
+    }
+
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        detenido = true;
+        for (Thread hilo : hilos) {
+            hilo.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        // lo que no llego a procesarse se rechaza: el carrito sigue sin pagar y el cliente puede reintentar
+        List<PedidoCheckout> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        for (PedidoCheckout pedido : restantes) {
+            rechazar(pedido, "El servicio se detuvo antes de procesar el pedido, reintentar.");
+        }
+    }
+
+
+    private void trabajar() {
+        List<PedidoCheckout> pedidos = new ArrayList<>(lote);
+        while (!detenido) {
+            try {
+                PedidoCheckout primero = cola.poll(200, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                pedidos.add(primero);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            cola.drainTo(pedidos, lote - 1);
+            for (PedidoCheckout pedido : pedidos) {
+                procesar(pedido);
+            }
+            pedidos.clear();
+        }
+    }
+
+
+    // El checkout lee el usuario del SecurityContext: el worker toma el del pedido mientras lo procesa. Un Error de
+    // un pedido lo rechaza y se loguea: los workers son fijos y si uno se cortara nadie lo reemplaza
+    private void procesar(PedidoCheckout pedido) {
+        SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+        contexto.setAuthentication(pedido.usuario());
+        SecurityContextHolder.setContext(contexto);
+        PedidoCheckout.Estado estado = PedidoCheckout.Estado.RECHAZADO;
+        String mensaje = "Error al Actualizar: no se pudo procesar el pedido, reintentar.";
+        try {
+            carritoService.changeStatusCarritoToPaid();
+            estado = PedidoCheckout.Estado.CONFIRMADO;
+            mensaje = "Estado de Carrito Actualizado";
+        } catch (Exception e) {
+            estado = PedidoCheckout.Estado.RECHAZADO;
+            mensaje = "Error al Actualizar: " + e.getMessage();
+            // igual que el checkout sincronico: el carrito se ajusta al stock que queda
+            try {
+                carritoService.updateExistingStockItems();
+            } catch (RuntimeException ex) {
+                log.warn("No se pudo ajustar el carrito {} despues del checkout", pedido.getCarritoId(), ex);
+            }
+        } catch (Throwable e) {
+            log.error("Error inesperado en el checkout del carrito {}", pedido.getCarritoId(), e);
+        } finally {
+            SecurityContextHolder.clearContext();
+            // primero se libera el usuario: quien espera el resultado ya puede encolar otro checkout
+            pendientesPorUsuario.remove(pedido.getUsername(), pedido);
+            pedido.terminar(estado, mensaje);
+        }
+    }
+
+
+    private void rechazar(PedidoCheckout pedido, String mensaje) {
+        pendientesPorUsuario.remove(pedido.getUsername(), pedido);
+        pedido.terminar(PedidoCheckout.Estado.RECHAZADO, mensaje);
+    }
+}
@@ -0,0 +1,67 @@
+package org.grupo1.markapbe.service.pedido;
+
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Un checkout encolado. El ticket identifica el pedido ante el cliente; el resultado se completa una sola vez, cuando
+ * un worker lo confirma o lo rechaza, y los que esperan el ticket se enteran por {@link #resultado()}.
+ */
+public class PedidoCheckout {
+
+    public enum Estado {
+        PENDIENTE, CONFIRMADO, RECHAZADO
+    }
+
+    private final String ticket;
+    private final Authentication usuario;
+    private final Long carritoId;
+    private final CompletableFuture<PedidoCheckout> resultado = new CompletableFuture<>();
+
+    private volatile Estado estado = Estado.PENDIENTE;
+    private volatile String mensaje;
+
+
+    PedidoCheckout(String ticket, Authentication usuario, Long carritoId) {
+        this.ticket = ticket;
+        this.usuario = usuario;
+        this.carritoId = carritoId;
+    }
+
+
+    public String getTicket() {
+        return ticket;
+    }
+
+    public String getUsername() {
+        return usuario.getName();
+    }
+
+    public Long getCarritoId() {
+        return carritoId;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public CompletableFuture<PedidoCheckout> resultado() {
+        return resultado;
+    }
+
+
+    Authentication usuario() {
+        return usuario;
+    }
+
+    void terminar(Estado estado, String mensaje) {
+        this.mensaje = mensaje;
+        this.estado = estado;
+        resultado.complete(this);
+    }
+}
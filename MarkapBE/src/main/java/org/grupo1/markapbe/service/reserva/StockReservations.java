@@ -0,0 +1,176 @@
+package org.grupo1.markapbe.service.reserva;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservas de stock de los carritos: agregar un producto al carrito aparta esas unidades por un tiempo
+ * (carrito.reservas.ttl) y nadie mas puede reservarlas ni comprarlas mientras tanto. El stock disponible de un
+ * producto es su stock menos lo reservado.
+ * <p>
+ * Las reservas viven en memoria, por producto. Cada reserva se agenda en una {@link TimingWheel} que un hilo
+ * avanza cada tick; al vencer se libera sin recorrer las demas. Renovar una reserva (volver a agregar el
+ * producto) agenda un vencimiento nuevo y el anterior se descarta al llegar.
+ * <p>
+ * La suma de lo reservado nunca supera el stock leido al reservar, y el stock solo baja por compras que ya
+ * tienen su reserva, asi que un checkout con reserva no puede quedarse sin stock por culpa de otro carrito.
+ */
+@Slf4j
+@Component
+public class StockReservations {
+
+    private final Duration ttl;
+
+    private final TimingWheel<Vencimiento> rueda;
+
+    private final ScheduledExecutorService reloj;
+
+    private final ConcurrentHashMap<Long, ReservasProducto> porProducto = new ConcurrentHashMap<>();
+
+
+    public StockReservations(@Value("${carrito.reservas.ttl:15m}") Duration ttl,
+                             @Value("${carrito.reservas.tick:1s}") Duration tick) {
+        this.ttl = ttl;
+        this.rueda = new TimingWheel<>(tick.toMillis(), 4, System.currentTimeMillis());
+        this.reloj = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "reservas-reloj");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reloj.scheduleAtFixedRate(this::avanzar, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Deja reservadas para el carrito exactamente {@code cantidad} unidades del producto y renueva el vencimiento.
+     * Bajar una reserva siempre se puede; subirla solo si el stock menos lo que reservaron los demas alcanza.
+     *
+     * @param stock stock actual del producto en la base
+     * @return false si no hay stock disponible para esa cantidad (la reserva que ya tenia queda igual)
+     */
+    public boolean reservar(Long carritoId, Long productoId, int cantidad, int stock) {
+        long vence = System.currentTimeMillis() + ttl.toMillis();
+        boolean[] reservado = {false};
+        porProducto.compute(productoId, (id, reservas) -> {
+            ReservasProducto actuales = reservas == null ? new ReservasProducto() : reservas;
+            Reserva anterior = actuales.porCarrito.get(carritoId);
+            int propia = anterior == null ? 0 : anterior.cantidad();
+            if (cantidad > propia && stock - (actuales.total - propia) < cantidad) {
+                return reservas;
+            }
+            actuales.porCarrito.put(carritoId, new Reserva(cantidad, vence));
+            actuales.total += cantidad - propia;
+            reservado[0] = true;
+            return actuales;
+        });
+        if (reservado[0]) {
+            rueda.agregar(new Vencimiento(productoId, carritoId, vence), vence);
+        }
+        return reservado[0];
+    }
+
+
+    /**
+     * Si el carrito tiene vigente una reserva de al menos esa cantidad.
+     */
+    public boolean cubre(Long carritoId, Long productoId, int cantidad) {
+        boolean[] cubre = {false};
+        porProducto.computeIfPresent(productoId, (id, reservas) -> {
+            Reserva reserva = reservas.porCarrito.get(carritoId);
+            cubre[0] = reserva != null && reserva.cantidad() >= cantidad;
+            return reservas;
+        });
+        return cubre[0];
+    }
+
+
+    public void liberar(Long carritoId, Long productoId) {
+        porProducto.computeIfPresent(productoId, (id, reservas) -> quitar(reservas, carritoId, null));
+    }
+
+
+    /**
+     * Las reservas del carrito pasaron a ser ventas: se liberan cuando confirma la transaccion del checkout (el
+     * stock ya bajo en la base). Si la transaccion se deshace, las reservas siguen hasta vencer.
+     */
+    public void confirmar(Long carritoId, Collection<Long> productoIds) {
+        List<Long> productos = List.copyOf(productoIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    productos.forEach(productoId -> liberar(carritoId, productoId));
+                }
+            });
+        } else {
+            productos.forEach(productoId -> liberar(carritoId, productoId));
+        }
+    }
+
+
+    public int reservado(Long productoId) {
+        ReservasProducto reservas = porProducto.get(productoId);
+        return reservas == null ? 0 : reservas.total;
+    }
+
+
+    public int disponible(Long productoId, int stock) {
+        return Math.max(0, stock - reservado(productoId));
+    }
+
+
+    @PreDestroy
+    public void cerrar() {
+        reloj.shutdownNow();
+    }
+
+
+    private void avanzar() {
+        try {
+            rueda.avanzar(System.currentTimeMillis(), vencimiento -> porProducto.computeIfPresent(vencimiento.productoId(),
+                    (id, reservas) -> quitar(reservas, vencimiento.carritoId(), vencimiento.vence())));
+        } catch (RuntimeException e) {
+            // una excepcion cancelaria el scheduleAtFixedRate y ninguna reserva volveria a vencer
+            log.error("Error al vencer reservas de stock", e);
+        }
+    }
+
+
+    // Se llama dentro del compute del producto. Con vence != null solo quita si la reserva no se renovo
+    private static ReservasProducto quitar(ReservasProducto reservas, Long carritoId, Long vence) {
+        Reserva reserva = reservas.porCarrito.get(carritoId);
+        if (reserva == null || (vence != null && reserva.vence() != vence)) {
+            return reservas;
+        }
+        reservas.porCarrito.remove(carritoId);
+        reservas.total -= reserva.cantidad();
+        return reservas.porCarrito.isEmpty() ? null : reservas;
+    }
+
+
+    // Se modifica solo dentro de porProducto.compute; total es volatile para leerlo sin tomar el lock
+    private static final class ReservasProducto {
+        private final Map<Long, Reserva> porCarrito = new HashMap<>();
+        private volatile int total;
+    }
+
+    private record Reserva(int cantidad, long vence) {
+    }
+
+    private record Vencimiento(Long productoId, Long carritoId, long vence) {
+    }
+}
@@ -0,0 +1,119 @@
+package org.grupo1.markapbe.service.reserva;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Rueda de tiempo jerarquica para vencer elementos sin recorrerlos a todos.
+ * <p>
+ * Cada nivel tiene 64 ranuras; una ranura del nivel 0 dura un tick y una del nivel n dura 64^n ticks. Un elemento
+ * entra en el nivel mas bajo que alcanza su vencimiento, y cuando el reloj llega a su ranura de un nivel alto se
+ * vuelve a repartir en los niveles de abajo, hasta vencer en el nivel 0. Agregar y vencer cuestan O(1) por
+ * elemento, sin importar cuantos haya pendientes. No hay baja: quien agrega descarta al vencer lo que ya no
+ * corresponde (por ejemplo una reserva renovada).
+ * <p>
+ * Thread-safe; el callback de vencidos se llama fuera del lock.
+ */
+public class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int MASCARA = RANURAS - 1;
+
+    private final long tickMillis;
+    private final int niveles;
+    private final ArrayDeque<Entrada<T>>[][] ranuras;
+
+    // ticks transcurridos desde el origen; todo lo que vence en un tick <= actual ya se entrego
+    private long actual;
+    private final long origenMillis;
+    private int pendientes;
+
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int niveles, long ahoraMillis) {
+        if (tickMillis < 1 || niveles < 1 || niveles * BITS > 60) {
+            throw new IllegalArgumentException("Tick o cantidad de niveles invalidos");
+        }
+        this.tickMillis = tickMillis;
+        this.niveles = niveles;
+        this.origenMillis = ahoraMillis;
+        this.ranuras = new ArrayDeque[niveles][RANURAS];
+        for (int nivel = 0; nivel < niveles; nivel++) {
+            for (int ranura = 0; ranura < RANURAS; ranura++) {
+                ranuras[nivel][ranura] = new ArrayDeque<>();
+            }
+        }
+    }
+
+
+    /**
+     * Agrega un elemento que vence en el instante dado (redondeado hacia arriba al tick siguiente). Lo que ya
+     * vencio se entrega en el proximo {@link #avanzar}.
+     */
+    public synchronized void agregar(T valor, long vencimientoMillis) {
+        long tick = Math.max(actual + 1, -Math.floorDiv(origenMillis - vencimientoMillis, tickMillis));
+        ubicar(new Entrada<>(valor, tick));
+        pendientes++;
+    }
+
+
+    /**
+     * Mueve el reloj hasta el instante dado y entrega todo lo que vencio en el camino.
+     */
+    public void avanzar(long ahoraMillis, Consumer<T> vencido) {
+        ArrayDeque<T> vencidos = new ArrayDeque<>();
+        synchronized (this) {
+            long hasta = Math.floorDiv(ahoraMillis - origenMillis, tickMillis);
+            while (actual < hasta) {
+                actual++;
+                if (pendientes == 0) {
+                    actual = hasta; // nada que vencer: el reloj salta sin recorrer ranuras vacias
+                    break;
+                }
+                cascada();
+                ArrayDeque<Entrada<T>> ranura = ranuras[0][(int) (actual & MASCARA)];
+                while (!ranura.isEmpty()) {
+                    vencidos.add(ranura.poll().valor());
+                    pendientes--;
+                }
+            }
+        }
+        vencidos.forEach(vencido);
+    }
+
+
+    public synchronized int pendientes() {
+        return pendientes;
+    }
+
+
+    // Al completar una vuelta del nivel n-1 se baja la ranura que toca del nivel n
+    private void cascada() {
+        for (int nivel = 1; nivel < niveles && (actual & ((1L << (BITS * nivel)) - 1)) == 0; nivel++) {
+            ArrayDeque<Entrada<T>> ranura = ranuras[nivel][(int) ((actual >>> (BITS * nivel)) & MASCARA)];
+            ArrayDeque<Entrada<T>> bajar = new ArrayDeque<>(ranura);
+            ranura.clear();
+            bajar.forEach(this::ubicar);
+        }
+    }
+
+
+    private void ubicar(Entrada<T> entrada) {
+        long distancia = entrada.tick() - actual;
+        for (int nivel = 0; nivel < niveles; nivel++) {
+            if (distancia < (1L << (BITS * (nivel + 1)))) {
+                ranuras[nivel][(int) ((entrada.tick() >>> (BITS * nivel)) & MASCARA)].add(entrada);
+                return;
+            }
+        }
+        // mas lejos que lo que cubre la rueda: espera en la ultima ranura del nivel superior y se reubica al bajar
+        int superior = niveles - 1;
+        long tope = actual + (1L << (BITS * niveles)) - 1;
+        ranuras[superior][(int) ((tope >>> (BITS * superior)) & MASCARA)].add(entrada);
+    }
+
+
+    private record Entrada<T>(T valor, long tick) {
+    }
+}
@@ -0,0 +1,220 @@
+package org.grupo1.markapbe.service.search;
+
+import org.grupo1.markapbe.persistence.projection.ProductSort;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice columnar en memoria para filtrar el catalogo por categoria, rango de precio y stock, y contar facetas.
+ * <p>
+ * Cada producto ocupa una fila en arreglos paralelos (id, categoria, precio en centavos, stock), asi un filtro
+ * recorre arreglos de primitivos en vez de objetos. Las filas de productos borrados se reutilizan.
+ * <p>
+ * Las facetas son disyuntivas: cada una se cuenta con todos los filtros menos el propio (los conteos por
+ * categoria ignoran el filtro de categoria, etc.), que es lo que necesita el front para mostrar cuantos
+ * productos habria al cambiar esa opcion. Se calculan todas en la misma pasada que el filtro.
+ */
+public class CatalogFacetIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // limites inferiores de cada bucket de precio en centavos, el ultimo bucket no tiene tope
+    private final long[] limitesBuckets;
+
+    private long[] productoIds = new long[1024];
+    private long[] categorias = new long[1024];
+    private long[] preciosCentavos = new long[1024];
+    private int[] stocks = new int[1024];
+    private int filas;
+
+    private final BitSet vivas = new BitSet();
+    private final Map<Long, Integer> filaPorProducto = new HashMap<>();
+    private final ArrayDeque<Integer> filasLibres = new ArrayDeque<>();
+
+
+    public CatalogFacetIndex(List<BigDecimal> limitesBuckets) {
+        this.limitesBuckets = limitesBuckets.stream().mapToLong(CatalogFacetIndex::centavos).sorted().toArray();
+    }
+
+
+    public void guardar(Long productoId, Long idCategoria, BigDecimal precio, int stock) {
+        lock.writeLock().lock();
+        try {
+            Integer fila = filaPorProducto.get(productoId);
+            if (fila == null) {
+                fila = nuevaFila();
+                filaPorProducto.put(productoId, fila);
+            }
+            productoIds[fila] = productoId;
+            categorias[fila] = idCategoria;
+            preciosCentavos[fila] = centavos(precio);
+            stocks[fila] = stock;
+            vivas.set(fila);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void eliminar(Long productoId) {
+        lock.writeLock().lock();
+        try {
+            Integer fila = filaPorProducto.remove(productoId);
+            if (fila != null) {
+                vivas.clear(fila);
+                filasLibres.push(fila);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            filas = 0;
+            vivas.clear();
+            filaPorProducto.clear();
+            filasLibres.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * @param categoriasFiltro categorias aceptadas, vacio para no filtrar por categoria
+     * @param precioMin        inclusive, null sin minimo
+     * @param precioMax        inclusive, null sin maximo
+     */
+    public Resultado filtrar(Set<Long> categoriasFiltro, BigDecimal precioMin, BigDecimal precioMax, boolean soloConStock,
+                             ProductSort orden, int offset, int limite) {
+        long minimo = precioMin == null ? Long.MIN_VALUE : centavos(precioMin);
+        long maximo = precioMax == null ? Long.MAX_VALUE : centavos(precioMax);
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Long> porCategoria = new HashMap<>();
+            long[] porBucket = new long[limitesBuckets.length];
+            long conStock = 0;
+            int[] coincidencias = new int[Math.max(16, Math.min(filas, 1024))];
+            int cantidad = 0;
+
+            for (int fila = vivas.nextSetBit(0); fila >= 0; fila = vivas.nextSetBit(fila + 1)) {
+                boolean categoriaOk = categoriasFiltro.isEmpty() || categoriasFiltro.contains(categorias[fila]);
+                boolean precioOk = preciosCentavos[fila] >= minimo && preciosCentavos[fila] <= maximo;
+                boolean stockOk = !soloConStock || stocks[fila] > 0;
+
+                if (precioOk && stockOk) {
+                    porCategoria.merge(categorias[fila], 1L, Long::sum);
+                }
+                if (categoriaOk && stockOk) {
+                    int bucket = bucket(preciosCentavos[fila]);
+                    if (bucket >= 0) {
+                        porBucket[bucket]++;
+                    }
+                }
+                if (categoriaOk && precioOk && stocks[fila] > 0) {
+                    conStock++;
+                }
+                if (categoriaOk && precioOk && stockOk) {
+                    if (cantidad == coincidencias.length) {
+                        coincidencias = Arrays.copyOf(coincidencias, cantidad * 2);
+                    }
+                    coincidencias[cantidad++] = fila;
+                }
+            }
+
+            return new Resultado(pagina(coincidencias, cantidad, orden, offset, limite), cantidad, porCategoria,
+                    porBucket, conStock);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public List<BigDecimal> limitesBuckets() {
+        return Arrays.stream(limitesBuckets).mapToObj(c -> BigDecimal.valueOf(c, 2)).toList();
+    }
+
+
+    // Top-(offset + limite) segun el orden con un heap, sin ordenar todas las coincidencias
+    private List<Long> pagina(int[] coincidencias, int cantidad, ProductSort orden, int offset, int limite) {
+        int k = offset + limite;
+        if (k <= 0 || offset >= cantidad) {
+            return List.of();
+        }
+        Comparator<Integer> comparador = comparador(orden);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(k, cantidad) + 1, comparador.reversed());
+        for (int i = 0; i < cantidad; i++) {
+            heap.offer(coincidencias[i]);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        Long[] ordenados = new Long[heap.size()];
+        for (int i = ordenados.length - 1; i >= 0; i--) {
+            ordenados[i] = productoIds[heap.poll()];
+        }
+        return Arrays.asList(ordenados).subList(offset, ordenados.length);
+    }
+
+
+    // Igual que la paginacion por cursor: todos los ordenes desempatan por id
+    private Comparator<Integer> comparador(ProductSort orden) {
+        Comparator<Integer> porId = (a, b) -> Long.compare(productoIds[a], productoIds[b]);
+        return switch (orden) {
+            case PRECIO_ASC -> Comparator.<Integer>comparingLong(f -> preciosCentavos[f]).thenComparing(porId);
+            case PRECIO_DESC -> Comparator.<Integer>comparingLong(f -> -preciosCentavos[f]).thenComparing(porId);
+            case NEWEST -> porId.reversed();
+            case ID -> porId;
+        };
+    }
+
+
+    private int bucket(long precio) {
+        int posicion = Arrays.binarySearch(limitesBuckets, precio);
+        return posicion >= 0 ? posicion : -(posicion + 1) - 1;
+    }
+
+
+    private int nuevaFila() {
+        if (!filasLibres.isEmpty()) {
+            return filasLibres.pop();
+        }
+        if (filas == productoIds.length) {
+            int capacidad = filas * 2;
+            productoIds = Arrays.copyOf(productoIds, capacidad);
+            categorias = Arrays.copyOf(categorias, capacidad);
+            preciosCentavos = Arrays.copyOf(preciosCentavos, capacidad);
+            stocks = Arrays.copyOf(stocks, capacidad);
+        }
+        return filas++;
+    }
+
+
+    private static long centavos(BigDecimal precio) {
+        return precio == null ? 0 : precio.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+
+    /**
+     * @param productoIds     ids de la pagina pedida, ya ordenados
+     * @param porBucket       cantidad por bucket de precio, en el orden de {@link #limitesBuckets()}
+     */
+    public record Resultado(List<Long> productoIds, long total, Map<Long, Long> porCategoria, long[] porBucket,
+                            long conStock) {
+    }
+}
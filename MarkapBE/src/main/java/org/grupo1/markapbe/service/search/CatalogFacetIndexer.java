@@ -0,0 +1,109 @@
+package org.grupo1.markapbe.service.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.projection.ProductFacetRow;
+import org.grupo1.markapbe.persistence.projection.ProductSort;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Mantiene el {@link CatalogFacetIndex} sincronizado con la base: lo carga al arrancar (o en el primer filtro,
+ * si llega antes) y despues lo actualiza con cada {@link ProductChangedEvent}.
+ */
+@Slf4j
+@Component
+public class CatalogFacetIndexer {
+
+    @Autowired
+    private ProductRepository productoRepository;
+
+    @Value("${catalogo.busqueda.lote-reconstruccion:5000}")
+    private int loteReconstruccion;
+
+    @Value("${catalogo.facetas.precio-buckets:0,50,100,200,500}")
+    private List<BigDecimal> limitesBuckets;
+
+    private volatile CatalogFacetIndex indice;
+
+    // un filtro que llega mientras se carga espera a que termine, en vez de ver el indice a medias
+    private volatile boolean cargado;
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        asegurarCargado();
+    }
+
+
+    @EventListener(CatalogImportedEvent.class)
+    public synchronized void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        CatalogFacetIndex nuevo = new CatalogFacetIndex(limitesBuckets);
+        indice = nuevo; // los eventos que lleguen durante la carga ya van al indice nuevo
+        long desde = 0;
+        int cantidad = 0;
+        List<ProductFacetRow> lote;
+        do {
+            lote = productoRepository.findFacetRowsAfter(desde, PageRequest.of(0, loteReconstruccion));
+            for (ProductFacetRow fila : lote) {
+                nuevo.guardar(fila.id(), fila.idCategoria(), fila.precio(), fila.stock());
+            }
+            if (!lote.isEmpty()) {
+                desde = lote.get(lote.size() - 1).id();
+                cantidad += lote.size();
+            }
+        } while (lote.size() == loteReconstruccion);
+        cargado = true;
+        log.info("Indice de facetas reconstruido: {} productos en {} ms", cantidad, System.currentTimeMillis() - inicio);
+    }
+
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent evento) {
+        CatalogFacetIndex actual = indice;
+        if (actual == null) {
+            return; // todavia no se cargo, la carga va a leer el estado actual de la base
+        }
+        if (evento.tipo() == ProductChangedEvent.Tipo.ELIMINADO) {
+            actual.eliminar(evento.productoId());
+            return;
+        }
+        ProductEntity producto = evento.producto();
+        actual.guardar(producto.getId(), producto.getCategoria().getId(), producto.getPrecio(), producto.getStock());
+    }
+
+
+    public CatalogFacetIndex.Resultado filtrar(Set<Long> categorias, BigDecimal precioMin, BigDecimal precioMax,
+                                               boolean soloConStock, ProductSort orden, int offset, int limite) {
+        return asegurarCargado().filtrar(categorias, precioMin, precioMax, soloConStock, orden, offset, limite);
+    }
+
+
+    public List<BigDecimal> limitesBuckets() {
+        return asegurarCargado().limitesBuckets();
+    }
+
+
+    private CatalogFacetIndex asegurarCargado() {
+        if (!cargado) {
+            synchronized (this) {
+                if (!cargado) {
+                    reconstruir();
+                }
+            }
+        }
+        return indice;
+    }
+}
@@ -0,0 +1,298 @@
+package org.grupo1.markapbe.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice invertido en memoria sobre descripcion y detalles de los productos, con ranking BM25.
+ * <p>
+ * Cada producto es un documento con un id interno denso; las posting lists guardan ids internos y frecuencias
+ * en arreglos de int, siempre en orden creciente porque los ids se asignan de forma incremental.
+ * Actualizar un producto marca su documento anterior como eliminado y agrega uno nuevo; cuando los
+ * eliminados superan a los vivos se compacta todo el indice.
+ */
+public class ProductSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // las palabras de la descripcion (el titulo) pesan el doble que las de los detalles
+    private static final int BOOST_DESCRIPCION = 2;
+    private static final int MIN_ELIMINADOS_PARA_COMPACTAR = 1_000;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> terminos = new HashMap<>();
+    private PostingList[] postings = new PostingList[1024];
+
+    private long[] productoIds = new long[1024];
+    private int[] longitudes = new int[1024];
+    private int[][] terminosPorDoc = new int[1024][];
+    private int[][] frecuenciasPorDoc = new int[1024][];
+    private int cantidadDocs;
+
+    private final BitSet eliminados = new BitSet();
+    private final Map<Long, Integer> docPorProducto = new HashMap<>();
+    private long longitudTotal;
+
+
+    public void indexar(Long productoId, String descripcion, String detalles) {
+        Map<String, Integer> frecuencias = new HashMap<>();
+        int longitud = 0;
+        for (String token : TextNormalizer.tokenizar(descripcion)) {
+            frecuencias.merge(token, BOOST_DESCRIPCION, Integer::sum);
+            longitud += BOOST_DESCRIPCION;
+        }
+        for (String token : TextNormalizer.tokenizar(detalles)) {
+            frecuencias.merge(token, 1, Integer::sum);
+            longitud++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            eliminarDocumento(productoId);
+            int doc = nuevoDocumento(productoId, longitud);
+            int[] ids = new int[frecuencias.size()];
+            int[] fs = new int[frecuencias.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entrada : frecuencias.entrySet()) {
+                int termino = idTermino(entrada.getKey());
+                postings[termino].agregar(doc, entrada.getValue());
+                postings[termino].documentosVivos++;
+                ids[i] = termino;
+                fs[i] = entrada.getValue();
+                i++;
+            }
+            terminosPorDoc[doc] = ids;
+            frecuenciasPorDoc[doc] = fs;
+            docPorProducto.put(productoId, doc);
+            longitudTotal += longitud;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void eliminar(Long productoId) {
+        lock.writeLock().lock();
+        try {
+            eliminarDocumento(productoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            terminos.clear();
+            postings = new PostingList[1024];
+            productoIds = new long[1024];
+            longitudes = new int[1024];
+            terminosPorDoc = new int[1024][];
+            frecuenciasPorDoc = new int[1024][];
+            cantidadDocs = 0;
+            eliminados.clear();
+            docPorProducto.clear();
+            longitudTotal = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docPorProducto.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Devuelve los ids de producto de la pagina pedida, ordenados por score BM25 descendente
+     * (a igual score, por id). Un documento aparece si contiene al menos uno de los terminos.
+     */
+    public SearchHits buscar(String consulta, int offset, int limite) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(TextNormalizer.tokenizar(consulta)));
+
+        lock.readLock().lock();
+        try {
+            int vivos = docPorProducto.size();
+            if (tokens.isEmpty() || vivos == 0) {
+                return new SearchHits(List.of(), 0);
+            }
+            float promedioLongitud = (float) longitudTotal / vivos;
+            float[] scores = new float[cantidadDocs];
+            int[] tocados = new int[16];
+            int cantidadTocados = 0;
+
+            for (String token : tokens) {
+                Integer termino = terminos.get(token);
+                if (termino == null || postings[termino].documentosVivos == 0) {
+                    continue;
+                }
+                PostingList lista = postings[termino];
+                float idf = (float) Math.log(1 + (vivos - lista.documentosVivos + 0.5) / (lista.documentosVivos + 0.5));
+                for (int i = 0; i < lista.size; i++) {
+                    int doc = lista.docs[i];
+                    if (eliminados.get(doc)) {
+                        continue;
+                    }
+                    int f = lista.frecuencias[i];
+                    float normalizacion = K1 * (1 - B + B * longitudes[doc] / promedioLongitud);
+                    if (scores[doc] == 0) {
+                        if (cantidadTocados == tocados.length) {
+                            tocados = Arrays.copyOf(tocados, tocados.length * 2);
+                        }
+                        tocados[cantidadTocados++] = doc;
+                    }
+                    scores[doc] += idf * f * (K1 + 1) / (f + normalizacion);
+                }
+            }
+
+            return new SearchHits(mejores(scores, tocados, cantidadTocados, offset, limite), cantidadTocados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Top-(offset + limite) con un heap de minimos, sin ordenar todos los documentos que matchean
+    private List<Long> mejores(float[] scores, int[] tocados, int cantidadTocados, int offset, int limite) {
+        int k = offset + limite;
+        if (k <= 0 || offset >= cantidadTocados) {
+            return List.of();
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(k, cantidadTocados) + 1, (a, b) -> {
+            int porScore = Float.compare(scores[a], scores[b]);
+            return porScore != 0 ? porScore : Long.compare(productoIds[b], productoIds[a]);
+        });
+        for (int i = 0; i < cantidadTocados; i++) {
+            heap.offer(tocados[i]);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        Long[] ordenados = new Long[heap.size()];
+        for (int i = ordenados.length - 1; i >= 0; i--) {
+            ordenados[i] = productoIds[heap.poll()];
+        }
+        return Arrays.asList(ordenados).subList(Math.min(offset, ordenados.length), ordenados.length);
+    }
+
+
+    private void eliminarDocumento(Long productoId) {
+        Integer doc = docPorProducto.remove(productoId);
+        if (doc == null) {
+            return;
+        }
+        eliminados.set(doc);
+        for (int termino : terminosPorDoc[doc]) {
+            postings[termino].documentosVivos--;
+        }
+        longitudTotal -= longitudes[doc];
+
+        int cantidadEliminados = eliminados.cardinality();
+        if (cantidadEliminados >= MIN_ELIMINADOS_PARA_COMPACTAR && cantidadEliminados > docPorProducto.size()) {
+            compactar();
+        }
+    }
+
+
+    private int nuevoDocumento(Long productoId, int longitud) {
+        if (cantidadDocs == productoIds.length) {
+            int capacidad = productoIds.length * 2;
+            productoIds = Arrays.copyOf(productoIds, capacidad);
+            longitudes = Arrays.copyOf(longitudes, capacidad);
+            terminosPorDoc = Arrays.copyOf(terminosPorDoc, capacidad);
+            frecuenciasPorDoc = Arrays.copyOf(frecuenciasPorDoc, capacidad);
+        }
+        int doc = cantidadDocs++;
+        productoIds[doc] = productoId;
+        longitudes[doc] = longitud;
+        return doc;
+    }
+
+
+    private int idTermino(String token) {
+        Integer existente = terminos.get(token);
+        if (existente != null) {
+            return existente;
+        }
+        int id = terminos.size();
+        if (id == postings.length) {
+            postings = Arrays.copyOf(postings, postings.length * 2);
+        }
+        postings[id] = new PostingList();
+        terminos.put(token, id);
+        return id;
+    }
+
+
+    // Reasigna ids internos densos a los documentos vivos y reconstruye las posting lists sin los eliminados
+    private void compactar() {
+        int vivos = docPorProducto.size();
+        int capacidad = Math.max(1024, Integer.highestOneBit(Math.max(1, vivos)) * 2);
+        long[] nuevosProductoIds = new long[capacidad];
+        int[] nuevasLongitudes = new int[capacidad];
+        int[][] nuevosTerminos = new int[capacidad][];
+        int[][] nuevasFrecuencias = new int[capacidad][];
+
+        for (int termino = 0; termino < terminos.size(); termino++) {
+            postings[termino] = new PostingList();
+        }
+        int nuevo = 0;
+        for (int doc = 0; doc < cantidadDocs; doc++) {
+            if (eliminados.get(doc)) {
+                continue;
+            }
+            nuevosProductoIds[nuevo] = productoIds[doc];
+            nuevasLongitudes[nuevo] = longitudes[doc];
+            nuevosTerminos[nuevo] = terminosPorDoc[doc];
+            nuevasFrecuencias[nuevo] = frecuenciasPorDoc[doc];
+            for (int i = 0; i < terminosPorDoc[doc].length; i++) {
+                PostingList lista = postings[terminosPorDoc[doc][i]];
+                lista.agregar(nuevo, frecuenciasPorDoc[doc][i]);
+                lista.documentosVivos++;
+            }
+            docPorProducto.put(productoIds[doc], nuevo);
+            nuevo++;
+        }
+        productoIds = nuevosProductoIds;
+        longitudes = nuevasLongitudes;
+        terminosPorDoc = nuevosTerminos;
+        frecuenciasPorDoc = nuevasFrecuencias;
+        cantidadDocs = nuevo;
+        eliminados.clear();
+    }
+
+
+    private static final class PostingList {
+        private int[] docs = new int[4];
+        private int[] frecuencias = new int[4];
+        private int size;
+        // cantidad de documentos no eliminados que contienen el termino (df de BM25)
+        private int documentosVivos;
+
+        private void agregar(int doc, int frecuencia) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frecuencias = Arrays.copyOf(frecuencias, size * 2);
+            }
+            docs[size] = doc;
+            frecuencias[size] = frecuencia;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.grupo1.markapbe.service.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.projection.ProductTextRow;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Mantiene el {@link ProductSearchIndex} y el {@link TrigramIndex} sincronizados con la base: los reconstruye al arrancar
+ * y despues los actualiza con cada {@link ProductChangedEvent}.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndexer {
+
+    @Autowired
+    private ProductRepository productoRepository;
+
+    @Value("${catalogo.busqueda.lote-reconstruccion:5000}")
+    private int loteReconstruccion;
+
+    // tope de candidatos que se comparan por distancia de edicion en la busqueda aproximada
+    @Value("${catalogo.busqueda.fuzzy.max-candidatos:200}")
+    private int maxCandidatosFuzzy;
+
+    private final ProductSearchIndex indice = new ProductSearchIndex();
+
+    private final TrigramIndex trigramas = new TrigramIndex();
+
+    // hasta terminar la reconstruccion las busquedas siguen yendo a la base
+    private volatile boolean listo;
+
+
+    @EventListener({ApplicationReadyEvent.class, CatalogImportedEvent.class})
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        listo = false;
+        indice.limpiar();
+        trigramas.limpiar();
+        long desde = 0;
+        List<ProductTextRow> lote;
+        do {
+            lote = productoRepository.findTextRowsAfter(desde, PageRequest.of(0, loteReconstruccion));
+            for (ProductTextRow fila : lote) {
+                indice.indexar(fila.id(), fila.descripcion(), fila.detalles());
+                trigramas.indexar(fila.id(), fila.descripcion());
+            }
+            if (!lote.isEmpty()) {
+                desde = lote.get(lote.size() - 1).id();
+            }
+        } while (lote.size() == loteReconstruccion);
+        listo = true;
+        log.info("Indice de busqueda reconstruido: {} productos en {} ms", indice.size(), System.currentTimeMillis() - inicio);
+    }
+
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent evento) {
+        switch (evento.tipo()) {
+            case CREADO, ACTUALIZADO -> {
+                ProductEntity producto = evento.producto();
+                indice.indexar(producto.getId(), producto.getDescripcion(), producto.getDetalles());
+                trigramas.indexar(producto.getId(), producto.getDescripcion());
+            }
+            case ELIMINADO -> {
+                indice.eliminar(evento.productoId());
+                trigramas.eliminar(evento.productoId());
+            }
+            default -> {
+                // destacar o mover stock no cambia el texto indexado
+            }
+        }
+    }
+
+
+    /**
+     * Busca en memoria. Vacio si el indice todavia no termino de cargarse o la consulta no tiene terminos
+     * indexables (solo stopwords o simbolos); en ese caso quien llama decide como resolverla.
+     */
+    public Optional<SearchHits> buscar(String consulta, int offset, int limite) {
+        if (!listo || TextNormalizer.tokenizar(consulta).isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(indice.buscar(consulta, offset, limite));
+    }
+
+
+    // Igual que buscar pero tolerando errores de tipeo en la descripcion
+    public Optional<SearchHits> buscarAproximado(String consulta, int offset, int limite) {
+        if (!listo || TextNormalizer.tokenizar(consulta).isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(trigramas.buscar(consulta, maxCandidatosFuzzy, offset, limite));
+    }
+}
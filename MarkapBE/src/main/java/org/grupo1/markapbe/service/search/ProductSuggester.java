@@ -0,0 +1,137 @@
+package org.grupo1.markapbe.service.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grupo1.markapbe.persistence.entity.CategoryEntity;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.projection.ProductSuggestionRow;
+import org.grupo1.markapbe.persistence.repository.CategoryRepository;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.event.CatalogImportedEvent;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.grupo1.markapbe.service.search.SuggestionTrie.Sugerencia;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mantiene el {@link SuggestionTrie} del autocompletado con las descripciones de los productos y los nombres
+ * de las categorias. Los productos pesan segun su stock (los destacados un poco mas, los agotados al final)
+ * y las categorias segun cuantos productos tienen.
+ */
+@Slf4j
+@Component
+public class ProductSuggester {
+
+    public static final int MAX_SUGERENCIAS = 10;
+
+    @Autowired
+    private ProductRepository productoRepository;
+
+    @Autowired
+    private CategoryRepository categoriaRepository;
+
+    @Value("${catalogo.busqueda.lote-reconstruccion:5000}")
+    private int loteReconstruccion;
+
+    private final SuggestionTrie trie = new SuggestionTrie(MAX_SUGERENCIAS);
+
+    // para recalcular el peso de las categorias cuando se crea, mueve o borra un producto
+    private final Map<Long, String> nombresCategoria = new HashMap<>();
+    private final Map<Long, Integer> productosPorCategoria = new HashMap<>();
+    private final Map<Long, Long> categoriaDeProducto = new HashMap<>();
+
+
+    @EventListener({ApplicationReadyEvent.class, CatalogImportedEvent.class})
+    public synchronized void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        trie.limpiar();
+        nombresCategoria.clear();
+        productosPorCategoria.clear();
+        categoriaDeProducto.clear();
+        for (CategoryEntity categoria : categoriaRepository.findAll()) {
+            nombresCategoria.put(categoria.getId(), categoria.getNombreCategoria());
+        }
+
+        long desde = 0;
+        List<ProductSuggestionRow> lote;
+        do {
+            lote = productoRepository.findSuggestionRowsAfter(desde, PageRequest.of(0, loteReconstruccion));
+            for (ProductSuggestionRow fila : lote) {
+                trie.agregar(new Sugerencia(fila.descripcion(), Sugerencia.Tipo.PRODUCTO, fila.id(),
+                        pesoProducto(fila.stock(), fila.destacado())));
+                categoriaDeProducto.put(fila.id(), fila.idCategoria());
+                productosPorCategoria.merge(fila.idCategoria(), 1, Integer::sum);
+            }
+            if (!lote.isEmpty()) {
+                desde = lote.get(lote.size() - 1).id();
+            }
+        } while (lote.size() == loteReconstruccion);
+
+        nombresCategoria.keySet().forEach(this::actualizarCategoria);
+        log.info("Autocompletado reconstruido: {} productos en {} ms", categoriaDeProducto.size(), System.currentTimeMillis() - inicio);
+    }
+
+
+    @EventListener
+    public synchronized void onProductChanged(ProductChangedEvent evento) {
+        if (evento.tipo() == ProductChangedEvent.Tipo.ELIMINADO) {
+            trie.quitar(Sugerencia.Tipo.PRODUCTO, evento.productoId());
+            moverDeCategoria(evento.productoId(), null);
+            return;
+        }
+        ProductEntity producto = evento.producto();
+        trie.agregar(new Sugerencia(producto.getDescripcion(), Sugerencia.Tipo.PRODUCTO, producto.getId(),
+                pesoProducto(producto.getStock(), producto.isDestacado())));
+        CategoryEntity categoria = producto.getCategoria();
+        if (categoria != null) {
+            nombresCategoria.computeIfAbsent(categoria.getId(), id -> categoriaRepository.findById(id)
+                    .map(CategoryEntity::getNombreCategoria).orElse(null));
+            moverDeCategoria(producto.getId(), categoria.getId());
+        }
+    }
+
+
+    public List<Sugerencia> sugerir(String prefijo, int limite) {
+        return trie.sugerir(prefijo, limite);
+    }
+
+
+    private void moverDeCategoria(Long productoId, Long idCategoria) {
+        Long anterior = idCategoria == null ? categoriaDeProducto.remove(productoId) : categoriaDeProducto.put(productoId, idCategoria);
+        if (anterior != null && anterior.equals(idCategoria)) {
+            return;
+        }
+        if (anterior != null) {
+            productosPorCategoria.merge(anterior, -1, Integer::sum);
+            actualizarCategoria(anterior);
+        }
+        if (idCategoria != null) {
+            productosPorCategoria.merge(idCategoria, 1, Integer::sum);
+            actualizarCategoria(idCategoria);
+        }
+    }
+
+
+    private void actualizarCategoria(Long idCategoria) {
+        String nombre = nombresCategoria.get(idCategoria);
+        if (nombre != null) {
+            trie.agregar(new Sugerencia(nombre, Sugerencia.Tipo.CATEGORIA, idCategoria,
+                    productosPorCategoria.getOrDefault(idCategoria, 0)));
+        }
+    }
+
+
+    private static double pesoProducto(int stock, boolean destacado) {
+        if (stock <= 0) {
+            return 0;
+        }
+        return 1 + Math.log1p(stock) + (destacado ? 1 : 0);
+    }
+}
@@ -0,0 +1,10 @@
+package org.grupo1.markapbe.service.search;
+
+import java.util.List;
+
+/**
+ * Resultado de una busqueda en el indice: los ids de la pagina pedida, ya ordenados por relevancia,
+ * y la cantidad total de productos que matchean.
+ */
+public record SearchHits(List<Long> productoIds, long total) {
+}
@@ -0,0 +1,302 @@
+package org.grupo1.markapbe.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Trie de prefijos para autocompletar. Cada nodo guarda ya calculadas las K mejores sugerencias de su subarbol,
+ * asi una consulta solo recorre el prefijo y devuelve esa lista, sin visitar el resto del subarbol.
+ * <p>
+ * Una sugerencia se inserta bajo cada comienzo de palabra de su texto normalizado ("figura spiderman" queda
+ * bajo "figura spiderman" y "spiderman"), para que tambien se encuentre escribiendo la segunda palabra.
+ * Agregar inserta la sugerencia en los top-K de su camino; quitarla (o reemplazarla) rearma, de la hoja a la raiz,
+ * los top-K de los nodos que la tenian.
+ */
+public class SuggestionTrie {
+
+    // las claves mas largas se cortan: nadie escribe 60 letras esperando una sugerencia
+    private static final int LARGO_MAXIMO_CLAVE = 48;
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Comparator<Sugerencia> POR_RELEVANCIA = Comparator
+            .comparingDouble(Sugerencia::peso).reversed()
+            .thenComparing(Sugerencia::texto)
+            .thenComparing(Sugerencia::tipo)
+            .thenComparingLong(Sugerencia::id);
+
+    private final int k;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Nodo raiz = new Nodo();
+
+    // claves bajo las que esta insertada cada sugerencia, para poder quitarla
+    private final Map<Clave, Insercion> inserciones = new HashMap<>();
+
+
+    public SuggestionTrie(int k) {
+        this.k = k;
+    }
+
+
+    /**
+     * Agrega la sugerencia o, si ya existia con el mismo tipo e id, la reemplaza (texto o peso nuevos).
+     */
+    public void agregar(Sugerencia sugerencia) {
+        List<String> claves = claves(sugerencia.texto());
+        lock.writeLock().lock();
+        try {
+            quitarInterno(new Clave(sugerencia.tipo(), sugerencia.id()));
+            if (claves.isEmpty()) {
+                return;
+            }
+            for (String clave : claves) {
+                List<Nodo> camino = camino(clave, true);
+                camino.get(camino.size() - 1).terminales.add(sugerencia);
+                for (Nodo nodo : camino) {
+                    incluir(nodo, sugerencia);
+                }
+            }
+            inserciones.put(new Clave(sugerencia.tipo(), sugerencia.id()), new Insercion(sugerencia, claves));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void quitar(Sugerencia.Tipo tipo, long id) {
+        lock.writeLock().lock();
+        try {
+            quitarInterno(new Clave(tipo, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            raiz.letras = new char[0];
+            raiz.hijos = new Nodo[0];
+            raiz.terminales.clear();
+            raiz.mejores = new Sugerencia[0];
+            inserciones.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Las mejores sugerencias (como mucho K) para lo que el usuario lleva escrito.
+     */
+    public List<Sugerencia> sugerir(String prefijo, int limite) {
+        String normalizado = normalizarClave(prefijo, LARGO_MAXIMO_CLAVE);
+        if (normalizado.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Nodo nodo = raiz;
+            for (int i = 0; i < normalizado.length() && nodo != null; i++) {
+                nodo = nodo.hijo(normalizado.charAt(i));
+            }
+            if (nodo == null) {
+                return List.of();
+            }
+            return List.of(Arrays.copyOf(nodo.mejores, Math.min(limite, nodo.mejores.length)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    private void quitarInterno(Clave clave) {
+        Insercion anterior = inserciones.remove(clave);
+        if (anterior == null) {
+            return;
+        }
+        for (String texto : anterior.claves()) {
+            List<Nodo> camino = camino(texto, false);
+            if (camino == null) {
+                continue;
+            }
+            Nodo ultimo = camino.get(camino.size() - 1);
+            ultimo.terminales.remove(anterior.sugerencia());
+            podar(camino, texto);
+            recalcular(camino, anterior.sugerencia());
+        }
+    }
+
+
+    private List<Nodo> camino(String clave, boolean crear) {
+        List<Nodo> camino = new ArrayList<>(clave.length() + 1);
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        for (int i = 0; i < clave.length(); i++) {
+            Nodo siguiente = nodo.hijo(clave.charAt(i));
+            if (siguiente == null) {
+                if (!crear) {
+                    return null;
+                }
+                siguiente = nodo.agregarHijo(clave.charAt(i));
+            }
+            nodo = siguiente;
+            camino.add(nodo);
+        }
+        return camino;
+    }
+
+
+    // Saca del camino los nodos que quedaron sin sugerencias ni hijos
+    private static void podar(List<Nodo> camino, String clave) {
+        for (int i = camino.size() - 1; i > 0; i--) {
+            Nodo nodo = camino.get(i);
+            if (!nodo.terminales.isEmpty() || nodo.letras.length > 0) {
+                return;
+            }
+            camino.get(i - 1).quitarHijo(clave.charAt(i - 1));
+            camino.remove(i);
+        }
+    }
+
+
+    // Agregar solo puede desplazar al ultimo de cada top-K, alcanza con insertarla en orden si entra
+    private void incluir(Nodo nodo, Sugerencia sugerencia) {
+        Sugerencia[] mejores = nodo.mejores;
+        int posicion = Arrays.binarySearch(mejores, sugerencia, POR_RELEVANCIA);
+        if (posicion >= 0) {
+            return; // ya estaba por otro comienzo de palabra del mismo subarbol
+        }
+        posicion = -(posicion + 1);
+        if (posicion >= k) {
+            return;
+        }
+        Sugerencia[] nuevos = new Sugerencia[Math.min(k, mejores.length + 1)];
+        System.arraycopy(mejores, 0, nuevos, 0, posicion);
+        nuevos[posicion] = sugerencia;
+        System.arraycopy(mejores, posicion, nuevos, posicion + 1, nuevos.length - posicion - 1);
+        nodo.mejores = nuevos;
+    }
+
+
+    // Al quitar, los nodos que la tenian en su top-K lo rearman con sus propias sugerencias mas los top-K de sus hijos
+    private void recalcular(List<Nodo> camino, Sugerencia quitada) {
+        for (int i = camino.size() - 1; i >= 0; i--) {
+            Nodo nodo = camino.get(i);
+            if (Arrays.binarySearch(nodo.mejores, quitada, POR_RELEVANCIA) < 0) {
+                continue;
+            }
+            List<Sugerencia> candidatas = new ArrayList<>(nodo.terminales);
+            for (Nodo hijo : nodo.hijos) {
+                candidatas.addAll(Arrays.asList(hijo.mejores));
+            }
+            nodo.mejores = candidatas.stream()
+                    .distinct() // una sugerencia puede llegar por dos comienzos de palabra del mismo subarbol
+                    .sorted(POR_RELEVANCIA)
+                    .limit(k)
+                    .toArray(Sugerencia[]::new);
+        }
+    }
+
+
+    // El texto completo y cada sufijo que arranca en una palabra que no es stopword ("de spiderman" no, "spiderman" si)
+    private static List<String> claves(String texto) {
+        String normalizado = normalizarClave(texto, Integer.MAX_VALUE);
+        if (normalizado.isEmpty()) {
+            return List.of();
+        }
+        String[] palabras = normalizado.split(" ");
+        List<String> claves = new ArrayList<>(palabras.length);
+        int inicio = 0;
+        for (int i = 0; i < palabras.length; i++) {
+            if (i == 0 || !TextNormalizer.esStopword(palabras[i])) {
+                String clave = normalizado.substring(inicio);
+                clave = clave.length() > LARGO_MAXIMO_CLAVE ? clave.substring(0, LARGO_MAXIMO_CLAVE) : clave;
+                if (!claves.contains(clave)) {
+                    claves.add(clave);
+                }
+            }
+            inicio += palabras[i].length() + 1;
+        }
+        return claves;
+    }
+
+
+    // Misma normalizacion para lo que se indexa y lo que se escribe: sin tildes, minusculas y un espacio entre palabras
+    private static String normalizarClave(String texto, int largoMaximo) {
+        String normalizado = SEPARADORES.matcher(TextNormalizer.normalizar(texto)).replaceAll(" ").trim();
+        return normalizado.length() > largoMaximo ? normalizado.substring(0, largoMaximo) : normalizado;
+    }
+
+
+    /**
+     * @param id id del producto o de la categoria segun el tipo
+     */
+    public record Sugerencia(String texto, Tipo tipo, long id, double peso) {
+
+        public enum Tipo {
+            PRODUCTO,
+            CATEGORIA
+        }
+    }
+
+
+    private record Clave(Sugerencia.Tipo tipo, long id) {
+    }
+
+
+    private record Insercion(Sugerencia sugerencia, List<String> claves) {
+    }
+
+
+    // Hijos en arreglos ordenados por letra y busqueda binaria: ocupa mucho menos que un HashMap por nodo
+    private static final class Nodo {
+        private char[] letras = new char[0];
+        private Nodo[] hijos = new Nodo[0];
+        private final List<Sugerencia> terminales = new ArrayList<>(1);
+        private Sugerencia[] mejores = new Sugerencia[0];
+
+        private Nodo hijo(char letra) {
+            int i = Arrays.binarySearch(letras, letra);
+            return i >= 0 ? hijos[i] : null;
+        }
+
+        private Nodo agregarHijo(char letra) {
+            int posicion = -(Arrays.binarySearch(letras, letra) + 1);
+            char[] nuevasLetras = new char[letras.length + 1];
+            Nodo[] nuevosHijos = new Nodo[hijos.length + 1];
+            System.arraycopy(letras, 0, nuevasLetras, 0, posicion);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, posicion);
+            System.arraycopy(letras, posicion, nuevasLetras, posicion + 1, letras.length - posicion);
+            System.arraycopy(hijos, posicion, nuevosHijos, posicion + 1, hijos.length - posicion);
+            Nodo hijo = new Nodo();
+            nuevasLetras[posicion] = letra;
+            nuevosHijos[posicion] = hijo;
+            letras = nuevasLetras;
+            hijos = nuevosHijos;
+            return hijo;
+        }
+
+        private void quitarHijo(char letra) {
+            int posicion = Arrays.binarySearch(letras, letra);
+            if (posicion < 0) {
+                return;
+            }
+            char[] nuevasLetras = new char[letras.length - 1];
+            Nodo[] nuevosHijos = new Nodo[hijos.length - 1];
+            System.arraycopy(letras, 0, nuevasLetras, 0, posicion);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, posicion);
+            System.arraycopy(letras, posicion + 1, nuevasLetras, posicion, letras.length - posicion - 1);
+            System.arraycopy(hijos, posicion + 1, nuevosHijos, posicion, hijos.length - posicion - 1);
+            letras = nuevasLetras;
+            hijos = nuevosHijos;
+        }
+    }
+}
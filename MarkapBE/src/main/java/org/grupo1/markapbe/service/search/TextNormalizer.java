@@ -0,0 +1,47 @@
+package org.grupo1.markapbe.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizacion compartida por los indices del catalogo: minusculas, sin tildes y separado en palabras,
+ * para que "Cómic" y "comic" sean el mismo termino.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOPWORDS = Set.of("de", "del", "la", "las", "el", "los", "y", "o", "en",
+            "con", "para", "por", "un", "una", "al", "a", "the", "of");
+
+    private TextNormalizer() {
+    }
+
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    // Palabras normalizadas sin stopwords, en orden de aparicion y con repeticiones
+    public static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARADORES.split(normalizar(texto))) {
+            if (!token.isEmpty() && !STOPWORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    public static boolean esStopword(String palabra) {
+        return STOPWORDS.contains(palabra);
+    }
+}
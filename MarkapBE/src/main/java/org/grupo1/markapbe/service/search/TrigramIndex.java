@@ -0,0 +1,336 @@
+package org.grupo1.markapbe.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice de trigramas sobre la descripcion de los productos para la busqueda tolerante a errores de tipeo.
+ * <p>
+ * Cada palabra se parte en trigramas con relleno al estilo pg_trgm ("sol" da "  s", " so", "sol", "ol "),
+ * asi una palabra mal escrita todavia comparte la mayoria de sus trigramas con la correcta. La busqueda junta
+ * candidatos por trigramas en comun, se queda con los {@code maxCandidatos} mas parecidos y recien a esos
+ * les calcula la distancia de edicion palabra por palabra. El tope de candidatos acota el peor caso aunque
+ * la consulta tenga trigramas muy comunes.
+ * <p>
+ * Los documentos eliminados o reemplazados se marcan y se compactan igual que en {@link ProductSearchIndex}.
+ */
+public class TrigramIndex {
+
+    // largo maximo de consulta que se considera, para acotar la cantidad de trigramas a recorrer
+    private static final int LARGO_MAXIMO_CONSULTA = 64;
+    private static final int MIN_ELIMINADOS_PARA_COMPACTAR = 1_000;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, DocList> postings = new HashMap<>();
+
+    private long[] productoIds = new long[1024];
+    private String[][] palabrasPorDoc = new String[1024][];
+    private long[][] trigramasPorDoc = new long[1024][];
+    private int cantidadDocs;
+
+    private final BitSet eliminados = new BitSet();
+    private final Map<Long, Integer> docPorProducto = new HashMap<>();
+
+
+    public void indexar(Long productoId, String descripcion) {
+        String[] palabras = TextNormalizer.tokenizar(descripcion).toArray(String[]::new);
+        long[] trigramas = trigramas(palabras);
+
+        lock.writeLock().lock();
+        try {
+            eliminarDocumento(productoId);
+            if (cantidadDocs == productoIds.length) {
+                int capacidad = productoIds.length * 2;
+                productoIds = Arrays.copyOf(productoIds, capacidad);
+                palabrasPorDoc = Arrays.copyOf(palabrasPorDoc, capacidad);
+                trigramasPorDoc = Arrays.copyOf(trigramasPorDoc, capacidad);
+            }
+            int doc = cantidadDocs++;
+            productoIds[doc] = productoId;
+            palabrasPorDoc[doc] = palabras;
+            trigramasPorDoc[doc] = trigramas;
+            for (long trigrama : trigramas) {
+                postings.computeIfAbsent(trigrama, t -> new DocList()).agregar(doc);
+            }
+            docPorProducto.put(productoId, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void eliminar(Long productoId) {
+        lock.writeLock().lock();
+        try {
+            eliminarDocumento(productoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            productoIds = new long[1024];
+            palabrasPorDoc = new String[1024][];
+            trigramasPorDoc = new long[1024][];
+            cantidadDocs = 0;
+            eliminados.clear();
+            docPorProducto.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Productos cuya descripcion se parece a la consulta. Se ordenan por cantidad de palabras de la consulta
+     * encontradas (dentro de la distancia tolerada para su largo), despues por distancia de edicion total y por
+     * ultimo por trigramas en comun. El total nunca supera el tope de candidatos.
+     */
+    public SearchHits buscar(String consulta, int maxCandidatos, int offset, int limite) {
+        String[] palabrasConsulta = TextNormalizer.tokenizar(consulta).stream()
+                .map(p -> p.length() > LARGO_MAXIMO_CONSULTA ? p.substring(0, LARGO_MAXIMO_CONSULTA) : p)
+                .distinct()
+                .toArray(String[]::new);
+        long[] trigramasConsulta = trigramas(palabrasConsulta);
+        if (trigramasConsulta.length == 0) {
+            return new SearchHits(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] comunes = new int[cantidadDocs];
+            int[] tocados = new int[16];
+            int cantidadTocados = 0;
+            for (long trigrama : trigramasConsulta) {
+                DocList lista = postings.get(trigrama);
+                if (lista == null) {
+                    continue;
+                }
+                for (int i = 0; i < lista.size; i++) {
+                    int doc = lista.docs[i];
+                    if (eliminados.get(doc)) {
+                        continue;
+                    }
+                    if (comunes[doc]++ == 0) {
+                        if (cantidadTocados == tocados.length) {
+                            tocados = Arrays.copyOf(tocados, tocados.length * 2);
+                        }
+                        tocados[cantidadTocados++] = doc;
+                    }
+                }
+            }
+
+            List<Resultado> resultados = new ArrayList<>();
+            for (int doc : candidatos(comunes, tocados, cantidadTocados, trigramasConsulta.length, maxCandidatos)) {
+                Resultado resultado = comparar(doc, palabrasConsulta, similitud(comunes[doc], trigramasConsulta.length, doc));
+                if (resultado.encontradas() > 0) {
+                    resultados.add(resultado);
+                }
+            }
+            resultados.sort(null);
+
+            int desde = Math.min(offset, resultados.size());
+            int hasta = Math.min(resultados.size(), desde + limite);
+            List<Long> ids = resultados.subList(desde, hasta).stream().map(Resultado::productoId).toList();
+            return new SearchHits(ids, resultados.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Los maxCandidatos documentos con mas trigramas en comun (coeficiente de Dice), sin ordenar el resto
+    private int[] candidatos(int[] comunes, int[] tocados, int cantidadTocados, int trigramasConsulta, int maxCandidatos) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(maxCandidatos, cantidadTocados) + 1, (a, b) -> {
+            int porSimilitud = Float.compare(similitud(comunes[a], trigramasConsulta, a), similitud(comunes[b], trigramasConsulta, b));
+            return porSimilitud != 0 ? porSimilitud : Long.compare(productoIds[b], productoIds[a]);
+        });
+        for (int i = 0; i < cantidadTocados; i++) {
+            heap.offer(tocados[i]);
+            if (heap.size() > maxCandidatos) {
+                heap.poll();
+            }
+        }
+        return heap.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+
+    private float similitud(int comunes, int trigramasConsulta, int doc) {
+        return 2f * comunes / (trigramasConsulta + trigramasPorDoc[doc].length);
+    }
+
+
+    private Resultado comparar(int doc, String[] palabrasConsulta, float similitud) {
+        int encontradas = 0;
+        int distanciaTotal = 0;
+        for (String palabra : palabrasConsulta) {
+            int tolerancia = tolerancia(palabra);
+            int mejor = tolerancia + 1;
+            for (String candidata : palabrasPorDoc[doc]) {
+                mejor = Math.min(mejor, distanciaPrefijo(palabra, candidata, mejor - 1));
+                if (mejor == 0) {
+                    break;
+                }
+            }
+            if (mejor <= tolerancia) {
+                encontradas++;
+                distanciaTotal += mejor;
+            } else {
+                distanciaTotal += tolerancia + 1;
+            }
+        }
+        return new Resultado(productoIds[doc], encontradas, distanciaTotal, similitud);
+    }
+
+
+    // Errores de tipeo tolerados segun el largo de la palabra, como hacen la mayoria de los buscadores
+    private static int tolerancia(String palabra) {
+        if (palabra.length() <= 2) {
+            return 0;
+        }
+        return palabra.length() <= 5 ? 1 : 2;
+    }
+
+
+    /**
+     * Distancia de Levenshtein entre la palabra de la consulta y la palabra del producto, o la de la consulta
+     * contra un prefijo del producto si da menos (el usuario puede no haber terminado de escribir).
+     * Corta apenas toda la fila supera el maximo, asi comparar palabras muy distintas cuesta poco.
+     */
+    static int distanciaPrefijo(String consulta, String palabra, int maximo) {
+        if (maximo < 0) {
+            return Integer.MAX_VALUE;
+        }
+        int[] anterior = new int[palabra.length() + 1];
+        int[] actual = new int[palabra.length() + 1];
+        for (int j = 0; j <= palabra.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= consulta.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= palabra.length(); j++) {
+                int costo = consulta.charAt(i - 1) == palabra.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + costo);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) {
+                return Integer.MAX_VALUE;
+            }
+            int[] temporal = anterior;
+            anterior = actual;
+            actual = temporal;
+        }
+        int completa = anterior[palabra.length()];
+        int mejorPrefijo = completa;
+        for (int j = consulta.length(); j < palabra.length(); j++) {
+            mejorPrefijo = Math.min(mejorPrefijo, anterior[j]);
+        }
+        // completar la palabra cuesta algo: "mone" no puede empatar con "mone" exacto contra "moneda"
+        int distancia = Math.min(completa, mejorPrefijo + (mejorPrefijo < completa ? 1 : 0));
+        return distancia > maximo ? Integer.MAX_VALUE : distancia;
+    }
+
+
+    private static long[] trigramas(String[] palabras) {
+        long[] trigramas = new long[16];
+        int cantidad = 0;
+        for (String palabra : palabras) {
+            String conRelleno = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= conRelleno.length(); i++) {
+                if (cantidad == trigramas.length) {
+                    trigramas = Arrays.copyOf(trigramas, cantidad * 2);
+                }
+                // tres chars de 16 bits entran en un long, sin crear Strings por trigrama
+                trigramas[cantidad++] = ((long) conRelleno.charAt(i) << 32) | ((long) conRelleno.charAt(i + 1) << 16)
+                        | conRelleno.charAt(i + 2);
+            }
+        }
+        return Arrays.stream(trigramas, 0, cantidad).distinct().toArray();
+    }
+
+
+    private void eliminarDocumento(Long productoId) {
+        Integer doc = docPorProducto.remove(productoId);
+        if (doc == null) {
+            return;
+        }
+        eliminados.set(doc);
+        int cantidadEliminados = eliminados.cardinality();
+        if (cantidadEliminados >= MIN_ELIMINADOS_PARA_COMPACTAR && cantidadEliminados > docPorProducto.size()) {
+            compactar();
+        }
+    }
+
+
+    private void compactar() {
+        int capacidad = Math.max(1024, Integer.highestOneBit(Math.max(1, docPorProducto.size())) * 2);
+        long[] nuevosProductoIds = new long[capacidad];
+        String[][] nuevasPalabras = new String[capacidad][];
+        long[][] nuevosTrigramas = new long[capacidad][];
+        postings.clear();
+        int nuevo = 0;
+        for (int doc = 0; doc < cantidadDocs; doc++) {
+            if (eliminados.get(doc)) {
+                continue;
+            }
+            int destino = nuevo;
+            nuevosProductoIds[nuevo] = productoIds[doc];
+            nuevasPalabras[nuevo] = palabrasPorDoc[doc];
+            nuevosTrigramas[nuevo] = trigramasPorDoc[doc];
+            for (long trigrama : trigramasPorDoc[doc]) {
+                postings.computeIfAbsent(trigrama, t -> new DocList()).agregar(destino);
+            }
+            docPorProducto.put(productoIds[doc], nuevo);
+            nuevo++;
+        }
+        productoIds = nuevosProductoIds;
+        palabrasPorDoc = nuevasPalabras;
+        trigramasPorDoc = nuevosTrigramas;
+        cantidadDocs = nuevo;
+        eliminados.clear();
+    }
+
+
+    private record Resultado(long productoId, int encontradas, int distanciaTotal, float similitud)
+            implements Comparable<Resultado> {
+
+        @Override
+        public int compareTo(Resultado otro) {
+            if (encontradas != otro.encontradas) {
+                return Integer.compare(otro.encontradas, encontradas);
+            }
+            if (distanciaTotal != otro.distanciaTotal) {
+                return Integer.compare(distanciaTotal, otro.distanciaTotal);
+            }
+            if (similitud != otro.similitud) {
+                return Float.compare(otro.similitud, similitud);
+            }
+            return Long.compare(productoId, otro.productoId);
+        }
+    }
+
+
+    private static final class DocList {
+        private int[] docs = new int[4];
+        private int size;
+
+        private void agregar(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.grupo1.markapbe.service.storage;
+
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Detecta el tipo de imagen por sus primeros bytes, ya que en el almacen solo se guarda el contenido.
+ */
+final class ImageContentTypes {
+
+    private ImageContentTypes() {
+    }
+
+    static String detectar(Path archivo) throws IOException {
+        byte[] cabecera = new byte[12];
+        int leidos;
+        try (InputStream in = Files.newInputStream(archivo)) {
+            leidos = in.readNBytes(cabecera, 0, cabecera.length);
+        }
+        if (leidos >= 3 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8 && (cabecera[2] & 0xFF) == 0xFF) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (leidos >= 8 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (leidos >= 6 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F') {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (leidos >= 12 && cabecera[0] == 'R' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == 'F'
+                && cabecera[8] == 'W' && cabecera[9] == 'E' && cabecera[10] == 'B' && cabecera[11] == 'P') {
+            return "image/webp";
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+}
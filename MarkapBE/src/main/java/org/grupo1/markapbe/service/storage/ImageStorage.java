@@ -0,0 +1,31 @@
+package org.grupo1.markapbe.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Almacen de imagenes direccionado por contenido: la clave de cada imagen es el hash SHA-256
+ * de sus bytes, por lo que una misma imagen se guarda una sola vez sin importar cuantos productos la usen.
+ */
+public interface ImageStorage {
+
+    /**
+     * Guarda el contenido leyendo el stream sin cargarlo completo en memoria.
+     *
+     * @return la clave (hash hexadecimal) con la que se puede recuperar la imagen
+     */
+    String store(InputStream contenido) throws IOException;
+
+    Optional<StoredImage> load(String key);
+
+    boolean exists(String key);
+
+    /**
+     * Guarda una version redimensionada de la imagen {@code key}. Las variantes se derivan del original,
+     * asi que quedan asociadas a su clave en lugar de tener un hash propio.
+     */
+    void storeVariant(String key, ImageVariant variante, byte[] contenido) throws IOException;
+
+    Optional<StoredImage> loadVariant(String key, ImageVariant variante);
+}
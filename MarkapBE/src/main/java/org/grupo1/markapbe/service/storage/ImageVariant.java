@@ -0,0 +1,34 @@
+package org.grupo1.markapbe.service.storage;
+
+import java.util.Arrays;
+
+/**
+ * Versiones redimensionadas que se generan de cada imagen subida. El tamaño es el lado mayor en pixeles.
+ * Estan ordenadas de mayor a menor para poder derivar cada una de la anterior.
+ */
+public enum ImageVariant {
+    DETAIL(1024),
+    CARD(400),
+    THUMBNAIL(160);
+
+    private final int ladoMaximo;
+
+    ImageVariant(int ladoMaximo) {
+        this.ladoMaximo = ladoMaximo;
+    }
+
+    public int getLadoMaximo() {
+        return ladoMaximo;
+    }
+
+    public String parametro() {
+        return name().toLowerCase();
+    }
+
+    public static ImageVariant desdeParametro(String valor) {
+        return Arrays.stream(values())
+                .filter(variante -> variante.parametro().equalsIgnoreCase(valor))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Variante de imagen desconocida: " + valor));
+    }
+}
@@ -0,0 +1,157 @@
+package org.grupo1.markapbe.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Genera las variantes (detail, card, thumbnail) de una imagen en el pool de imagenes, fuera del hilo de la peticion.
+ * La imagen original se decodifica una sola vez y cada variante se deriva de la anterior, que es mas grande.
+ */
+@Slf4j
+@Component
+public class ImageVariantProcessor {
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    @Qualifier("imageProcessingExecutor")
+    private ThreadPoolTaskExecutor executor;
+
+    @Value("${storage.images.jpeg-quality:0.82}")
+    private float calidadJpeg;
+
+    // claves con una tarea pendiente, para no encolar dos veces la misma imagen
+    private final Set<String> pendientes = ConcurrentHashMap.newKeySet();
+
+    // originales que ImageIO no sabe decodificar (por ejemplo webp), se sirven siempre sin redimensionar
+    private final Set<String> sinVariantes = ConcurrentHashMap.newKeySet();
+
+
+    public void programar(String key) {
+        if (key == null || sinVariantes.contains(key) || !pendientes.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generarVariantes(key);
+                } finally {
+                    pendientes.remove(key);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // cola llena: la variante se vuelve a pedir la proxima vez que alguien la necesite
+            pendientes.remove(key);
+            log.warn("Cola de procesamiento de imagenes llena, se pospone {}", key);
+        }
+    }
+
+
+    void generarVariantes(String key) {
+        Optional<StoredImage> original = imageStorage.load(key);
+        if (original.isEmpty()) {
+            return;
+        }
+        try {
+            byte[] bytesOriginales;
+            try (InputStream in = original.get().resource().getInputStream()) {
+                bytesOriginales = in.readAllBytes();
+            }
+            BufferedImage imagen = ImageIO.read(new ByteArrayInputStream(bytesOriginales));
+            if (imagen == null) {
+                log.warn("Formato de imagen no soportado para generar variantes: {}", key);
+                sinVariantes.add(key);
+                return;
+            }
+            boolean originalEsJpeg = MediaType.IMAGE_JPEG_VALUE.equals(original.get().contentType());
+            int ladoOriginal = Math.max(imagen.getWidth(), imagen.getHeight());
+            for (ImageVariant variante : ImageVariant.values()) {
+                imagen = redimensionar(imagen, variante.getLadoMaximo());
+                byte[] codificada = codificarJpeg(imagen);
+                // si el original ya era un JPEG chico que entra en la variante, recodificarlo solo lo agranda; si no
+                // entra se guarda la version reducida aunque pese mas, la variante no puede pasarse de su tamanio
+                if (originalEsJpeg && ladoOriginal <= variante.getLadoMaximo() && codificada.length >= bytesOriginales.length) {
+                    codificada = bytesOriginales;
+                }
+                imageStorage.storeVariant(key, variante, codificada);
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron generar las variantes de la imagen {}", key, e);
+        }
+    }
+
+
+    private static BufferedImage redimensionar(BufferedImage origen, int ladoMaximo) {
+        int ancho = origen.getWidth();
+        int alto = origen.getHeight();
+        double escala = Math.min(1.0, (double) ladoMaximo / Math.max(ancho, alto));
+        int anchoFinal = Math.max(1, (int) Math.round(ancho * escala));
+        int altoFinal = Math.max(1, (int) Math.round(alto * escala));
+
+        // reduccion por pasos de a la mitad, evita el aliasing de escalar de golpe con bilineal
+        BufferedImage actual = origen;
+        do {
+            ancho = Math.max(anchoFinal, ancho / 2);
+            alto = Math.max(altoFinal, alto / 2);
+            actual = dibujar(actual, ancho, alto);
+        } while (ancho != anchoFinal || alto != altoFinal);
+        return actual;
+    }
+
+
+    private static BufferedImage dibujar(BufferedImage origen, int ancho, int alto) {
+        BufferedImage destino = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG no tiene canal alfa, las transparencias quedan en blanco
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, ancho, alto);
+            g.drawImage(origen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+
+    private byte[] codificarJpeg(BufferedImage imagen) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(salida)) {
+            ImageWriteParam parametros = writer.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(calidadJpeg);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            writer.dispose();
+        }
+        return salida.toByteArray();
+    }
+}
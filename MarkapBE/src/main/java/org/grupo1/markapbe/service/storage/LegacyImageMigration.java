@@ -0,0 +1,72 @@
+package org.grupo1.markapbe.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Mueve las imagenes que todavia estan en base64 en la columna legacy Products.imagen al almacen de imagenes.
+ * Se procesa fila por fila para no traer todas las imagenes a memoria de una vez. La columna se vacia solo despues de
+ * guardar la imagen: si el almacen falla la fila queda como estaba y se reintenta en el proximo arranque; un base64
+ * invalido se descarta. Las bases nuevas ya no tienen la columna; en las viejas se borra con
+ * db/migracion-imagenes-legacy.sql una vez migradas todas las imagenes.
+ */
+@Slf4j
+@Component
+public class LegacyImageMigration implements ApplicationRunner {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Long> pendientes;
+        try {
+            pendientes = jdbcTemplate.queryForList(
+                    "SELECT id FROM Products WHERE imagen IS NOT NULL AND imagen_key IS NULL", Long.class);
+        } catch (DataAccessException e) {
+            // la base no tiene la columna legacy, no hay nada para migrar
+            return;
+        }
+
+        int migradas = 0;
+        for (Long id : pendientes) {
+            String base64 = jdbcTemplate.queryForObject("SELECT imagen FROM Products WHERE id = ?", String.class, id);
+            byte[] contenido;
+            try {
+                contenido = Base64.getDecoder().decode(base64.replaceAll("\\s", ""));
+            } catch (IllegalArgumentException e) {
+                log.warn("La imagen del producto {} no es un base64 valido, se descarta", id);
+                jdbcTemplate.update("UPDATE Products SET imagen = NULL WHERE id = ?", id);
+                continue;
+            }
+            String key = null;
+            if (contenido.length > 0) {
+                try {
+                    key = imageStorage.store(new ByteArrayInputStream(contenido));
+                } catch (IOException e) {
+                    log.warn("No se pudo guardar la imagen del producto {}, se reintenta en el proximo arranque", id, e);
+                    continue;
+                }
+            }
+            jdbcTemplate.update("UPDATE Products SET imagen_key = ?, imagen = NULL WHERE id = ?", key, id);
+            migradas++;
+        }
+
+        if (migradas > 0) {
+            log.info("Se migraron {} imagenes de Products.imagen al almacen de imagenes", migradas);
+        }
+    }
+}
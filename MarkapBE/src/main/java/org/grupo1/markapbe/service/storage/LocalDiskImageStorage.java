@@ -0,0 +1,133 @@
+package org.grupo1.markapbe.service.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Guarda cada imagen en disco como {raiz}/ab/cd/abcd...ef, donde el nombre es el SHA-256 del contenido.
+ * Las variantes se guardan al lado del original como {hash}-{variante}.jpg.
+ * La escritura pasa por un archivo temporal y un move atomico, asi nunca se sirve una imagen a medio escribir.
+ */
+@Component
+public class LocalDiskImageStorage implements ImageStorage {
+
+    private static final Pattern KEY_VALIDA = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path raiz;
+
+    public LocalDiskImageStorage(@Value("${storage.images.path}") String raiz) {
+        this.raiz = Paths.get(raiz).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.raiz);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de imagenes " + this.raiz, e);
+        }
+    }
+
+    @Override
+    public String store(InputStream contenido) throws IOException {
+        Path temporal = Files.createTempFile(raiz, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (DigestInputStream in = new DigestInputStream(contenido, digest);
+                 OutputStream out = Files.newOutputStream(temporal)) {
+                in.transferTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path destino = resolver(key);
+            if (!Files.exists(destino)) {
+                Files.createDirectories(destino.getParent());
+                try {
+                    Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // otra subida con el mismo contenido gano la carrera, el archivo ya es identico
+                }
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @Override
+    public Optional<StoredImage> load(String key) {
+        if (!exists(key)) {
+            return Optional.empty();
+        }
+        return cargar(key, resolver(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return key != null && KEY_VALIDA.matcher(key).matches() && Files.isRegularFile(resolver(key));
+    }
+
+    @Override
+    public void storeVariant(String key, ImageVariant variante, byte[] contenido) throws IOException {
+        if (!exists(key)) {
+            throw new IllegalArgumentException("No existe la imagen original " + key);
+        }
+        Path temporal = Files.createTempFile(raiz, "variant-", ".tmp");
+        try {
+            Files.write(temporal, contenido);
+            Files.move(temporal, resolverVariante(key, variante), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @Override
+    public Optional<StoredImage> loadVariant(String key, ImageVariant variante) {
+        if (key == null || !KEY_VALIDA.matcher(key).matches()) {
+            return Optional.empty();
+        }
+        Path archivo = resolverVariante(key, variante);
+        if (!Files.isRegularFile(archivo)) {
+            return Optional.empty();
+        }
+        return cargar(key + "-" + variante.parametro(), archivo);
+    }
+
+    private Optional<StoredImage> cargar(String key, Path archivo) {
+        try {
+            return Optional.of(new StoredImage(key, new FileSystemResource(archivo), Files.size(archivo),
+                    ImageContentTypes.detectar(archivo)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path resolver(String key) {
+        return raiz.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private Path resolverVariante(String key, ImageVariant variante) {
+        return resolver(key).resolveSibling(key + "-" + variante.parametro() + ".jpg");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.grupo1.markapbe.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Copia al almacen de imagenes las imagenes de los productos de data.sql, que vienen en el classpath
+ * (imagenes-semilla/) con su clave como nombre de archivo. Las que el almacen ya tiene no se vuelven a copiar.
+ */
+@Slf4j
+@Component
+public class SeedImages implements ApplicationRunner {
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Resource[] semillas = new PathMatchingResourcePatternResolver().getResources("classpath*:imagenes-semilla/*");
+        int copiadas = 0;
+        for (Resource semilla : semillas) {
+            String nombre = semilla.getFilename();
+            if (nombre == null || imageStorage.exists(nombre)) {
+                continue;
+            }
+            try (InputStream contenido = semilla.getInputStream()) {
+                String key = imageStorage.store(contenido);
+                if (!key.equals(nombre)) {
+                    log.warn("La imagen semilla {} no coincide con su contenido ({})", nombre, key);
+                }
+                copiadas++;
+            } catch (IOException e) {
+                log.warn("No se pudo copiar la imagen semilla {}", nombre, e);
+            }
+        }
+        if (copiadas > 0) {
+            log.info("Se copiaron {} imagenes semilla al almacen de imagenes", copiadas);
+        }
+    }
+}
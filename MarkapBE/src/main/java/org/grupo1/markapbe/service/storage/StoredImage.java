@@ -0,0 +1,6 @@
+package org.grupo1.markapbe.service.storage;
+
+import org.springframework.core.io.Resource;
+
+public record StoredImage(String key, Resource resource, long size, String contentType) {
+}
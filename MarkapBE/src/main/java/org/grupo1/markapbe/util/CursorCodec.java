@@ -0,0 +1,43 @@
+package org.grupo1.markapbe.util;
+
+import org.grupo1.markapbe.persistence.projection.KeysetPosition;
+import org.grupo1.markapbe.persistence.projection.ProductSort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursores opacos para la paginacion por keyset. El cliente solo los reenvia; adentro viajan el orden
+ * con el que se generaron y la posicion de la ultima fila, para rechazar un cursor usado con otro orden.
+ */
+public final class CursorCodec {
+
+    private static final String VERSION = "v1";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(ProductSort orden, KeysetPosition posicion) {
+        String precio = posicion.precio() == null ? "" : posicion.precio().toPlainString();
+        String plano = VERSION + "|" + orden.name() + "|" + precio + "|" + posicion.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetPosition decode(String cursor, ProductSort orden) {
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = plano.split("\\|", -1);
+            if (partes.length != 4 || !VERSION.equals(partes[0]) || !orden.name().equals(partes[1])) {
+                throw new IllegalArgumentException("El cursor no corresponde al orden " + orden.name().toLowerCase());
+            }
+            BigDecimal precio = partes[2].isEmpty() ? null : new BigDecimal(partes[2]);
+            if (orden.usaPrecio() && precio == null) {
+                throw new IllegalArgumentException("Cursor invalido");
+            }
+            return new KeysetPosition(precio, Long.valueOf(partes[3]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor invalido");
+        }
+    }
+}
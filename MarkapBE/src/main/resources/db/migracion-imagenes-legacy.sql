@@ -0,0 +1,17 @@
+-- Borra la columna legacy products.imagen (imagenes en base64) de las bases creadas antes del almacen de imagenes.
+--
+-- LegacyImageMigration mueve las imagenes de esa columna al almacen al arrancar y la deja en NULL; si el almacen
+-- falla, la fila conserva la imagen y se reintenta en el proximo arranque. Correr una sola vez contra la base de
+-- produccion, despues de un arranque de la version nueva: si todavia quedan imagenes sin migrar no borra nada.
+-- Se puede volver a correr sin romper nada.
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'products' AND column_name = 'imagen') THEN
+        IF EXISTS (SELECT 1 FROM products WHERE imagen IS NOT NULL AND imagen_key IS NULL) THEN
+            RAISE EXCEPTION 'Quedan imagenes en products.imagen sin migrar: arrancar la aplicacion y volver a correr';
+        END IF;
+        ALTER TABLE products DROP COLUMN imagen;
+    END IF;
+END $$;
@@ -0,0 +1,44 @@
+-- Migracion de IDENTITY a secuencias para las tablas con mas escrituras (PostgreSQL).
+--
+-- Las entidades Product, Carrito, ItemsCarrito, VisitedProducts y FavoriteProducts pasaron a usar secuencias con
+-- allocationSize 50: Hibernate pide un valor a la secuencia y usa los 50 ids anteriores a ese valor, asi que la
+-- secuencia tiene que arrancar por encima del id mas alto que ya existe. Correr una sola vez contra la base de
+-- produccion, antes o despues de desplegar la version nueva (si ddl-auto ya creo las secuencias, esto las corrige).
+-- Se puede volver a correr sin romper nada.
+--
+-- Para que los batch de Hibernate viajen como un solo INSERT de varias filas, agregar al URL de conexion:
+--   jdbc:postgresql://host:5432/markap?reWriteBatchedInserts=true
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS products_seq INCREMENT BY 50;
+ALTER SEQUENCE products_seq INCREMENT BY 50;
+SELECT setval('products_seq', GREATEST((SELECT max(id) FROM products), 1));
+ALTER TABLE products ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE products ALTER COLUMN id SET DEFAULT nextval('products_seq');
+
+CREATE SEQUENCE IF NOT EXISTS carrito_seq INCREMENT BY 50;
+ALTER SEQUENCE carrito_seq INCREMENT BY 50;
+SELECT setval('carrito_seq', GREATEST((SELECT max(id) FROM carrito), 1));
+ALTER TABLE carrito ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE carrito ALTER COLUMN id SET DEFAULT nextval('carrito_seq');
+
+CREATE SEQUENCE IF NOT EXISTS items_carrito_seq INCREMENT BY 50;
+ALTER SEQUENCE items_carrito_seq INCREMENT BY 50;
+SELECT setval('items_carrito_seq', GREATEST((SELECT max(id) FROM items_carrito), 1));
+ALTER TABLE items_carrito ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE items_carrito ALTER COLUMN id SET DEFAULT nextval('items_carrito_seq');
+
+CREATE SEQUENCE IF NOT EXISTS visited_products_seq INCREMENT BY 50;
+ALTER SEQUENCE visited_products_seq INCREMENT BY 50;
+SELECT setval('visited_products_seq', GREATEST((SELECT max(id) FROM visited_products), 1));
+ALTER TABLE visited_products ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE visited_products ALTER COLUMN id SET DEFAULT nextval('visited_products_seq');
+
+CREATE SEQUENCE IF NOT EXISTS favorite_products_seq INCREMENT BY 50;
+ALTER SEQUENCE favorite_products_seq INCREMENT BY 50;
+SELECT setval('favorite_products_seq', GREATEST((SELECT max(id) FROM favorite_products), 1));
+ALTER TABLE favorite_products ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE favorite_products ALTER COLUMN id SET DEFAULT nextval('favorite_products_seq');
+
+COMMIT;
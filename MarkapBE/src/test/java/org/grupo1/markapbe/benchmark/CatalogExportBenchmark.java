@@ -0,0 +1,104 @@
+package org.grupo1.markapbe.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grupo1.markapbe.service.CatalogExportService;
+import org.grupo1.markapbe.service.ProductService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compara el listado completo (lista en memoria + JSON) contra la exportacion NDJSON por cursor, midiendo el heap
+ * vivo a mitad de la respuesta con catalogos de distinto tamaño. La exportacion deberia quedar plana.
+ * H2 embebido arma el resultado entero salvo con LAZY_QUERY_EXECUTION, que se prende para que el cursor se
+ * comporte como el de PostgreSQL.
+ * Correr con: mvn test -Pbenchmark -Dtest=CatalogExportBenchmark
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark-export;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1",
+        "spring.jpa.show-sql=false"
+})
+class CatalogExportBenchmark {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CatalogExportService catalogExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${benchmark.productos:200000}")
+    private int cantidadMaxima;
+
+    @Test
+    void exportarCatalogo() throws Exception {
+        CatalogoSeeder seeder = new CatalogoSeeder(jdbcTemplate);
+        System.out.printf("%n%-10s %-10s %12s %16s %14s%n", "productos", "modo", "ms", "heap vivo MB", "bytes");
+        for (int cantidad = cantidadMaxima / 4; cantidad <= cantidadMaxima; cantidad *= 2) {
+            seeder.sembrar(cantidad);
+            medir(cantidad, "lista", salida -> objectMapper.writeValue(salida, productService.getAllProductos()));
+            medir(cantidad, "ndjson", salida -> catalogExportService.exportar(salida));
+        }
+    }
+
+    private void medir(int cantidad, String modo, Exportacion exportacion) throws Exception {
+        long base = heapVivo();
+        ContadorBytes calentamiento = new ContadorBytes(Long.MAX_VALUE);
+        exportacion.correr(calentamiento);
+
+        // a mitad de la respuesta se mide lo que sigue vivo: la lista entera en un caso, un lote en el otro
+        ContadorBytes contador = new ContadorBytes(calentamiento.bytes / 2);
+        long inicio = System.nanoTime();
+        exportacion.correr(contador);
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+        System.out.printf("%-10d %-10s %12d %16.1f %14d%n", cantidad, modo, ms,
+                (contador.heapAMitad - base) / 1e6, contador.bytes);
+    }
+
+    private static long heapVivo() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private interface Exportacion {
+        void correr(OutputStream salida) throws Exception;
+    }
+
+    private static final class ContadorBytes extends OutputStream {
+        private final long mitad;
+        private long bytes;
+        private long heapAMitad;
+
+        private ContadorBytes(long mitad) {
+            this.mitad = mitad;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (bytes < mitad && bytes + len >= mitad) {
+                heapAMitad = heapVivo();
+            }
+            bytes += len;
+        }
+    }
+}
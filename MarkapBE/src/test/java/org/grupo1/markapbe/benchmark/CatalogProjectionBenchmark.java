@@ -0,0 +1,105 @@
+package org.grupo1.markapbe.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductResponseDTO;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.ProductService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Compara una pagina de categoria hidratando ProductEntity completas (como antes) contra la proyeccion de tarjetas.
+ * Correr con: mvn test -Pbenchmark -Dtest=CatalogProjectionBenchmark [-Dbenchmark.productos=100000]
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+class CatalogProjectionBenchmark {
+
+    private static final int ITERACIONES = 30;
+    private static final int TAMANIO_PAGINA = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${benchmark.productos:100000}")
+    private int cantidadProductos;
+
+    @Test
+    void paginaDeCategoria() throws Exception {
+        new CatalogoSeeder(jdbcTemplate).sembrar(cantidadProductos);
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Long categoria = jdbcTemplate.queryForObject("SELECT min(id) FROM Categories", Long.class);
+
+        System.out.printf("%nCatalogo sembrado: %d productos, pagina de %d%n", cantidadProductos, TAMANIO_PAGINA);
+        System.out.printf("%-10s %-12s %12s %12s %14s %12s%n", "pagina", "modo", "mediana ms", "sentencias", "entidades", "bytes JSON");
+        for (int pagina : new int[]{0, 10, 100}) {
+            PageRequest pageRequest = PageRequest.of(pagina, TAMANIO_PAGINA);
+            medir("entidad", pagina, estadisticas, () -> transactionTemplate.execute(status ->
+                    productRepository.findByCategoria_Id(categoria, pageRequest).map(this::comoAntes)));
+            medir("proyeccion", pagina, estadisticas, () ->
+                    productService.getProductosByIdCategoria(categoria, pageRequest));
+        }
+    }
+
+    private void medir(String modo, int pagina, Statistics estadisticas, Supplier<Page<?>> consulta) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            consulta.get(); // calentamiento
+        }
+        long[] tiempos = new long[ITERACIONES];
+        estadisticas.clear();
+        Page<?> resultado = null;
+        for (int i = 0; i < ITERACIONES; i++) {
+            long inicio = System.nanoTime();
+            resultado = consulta.get();
+            tiempos[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(tiempos);
+        System.out.printf("%-10d %-12s %12.3f %12d %14d %12d%n", pagina, modo, tiempos[ITERACIONES / 2] / 1e6,
+                estadisticas.getPrepareStatementCount() / ITERACIONES,
+                estadisticas.getEntityLoadCount() / ITERACIONES,
+                objectMapper.writeValueAsBytes(resultado.getContent()).length);
+    }
+
+    // Conversion del listado previa a la proyeccion: toca categoria (LAZY) y user por cada fila
+    private ProductResponseDTO comoAntes(ProductEntity producto) {
+        return new ProductResponseDTO(producto.getId(), producto.getImagenKey(), producto.getDescripcion(),
+                producto.getPrecio(), producto.getDetalles(), producto.getStock(),
+                producto.getCategoria().getNombreCategoria(), producto.getUser().getUsername());
+    }
+}
@@ -0,0 +1,63 @@
+package org.grupo1.markapbe.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Siembra un catalogo sintetico directamente por JDBC para los benchmarks.
+ * Usa las categorias y el usuario "master" que carga data.sql.
+ */
+public class CatalogoSeeder {
+
+    private static final String[] PALABRAS = {"figura", "accion", "comic", "manga", "moneda", "billete", "autografo",
+            "vintage", "carta", "coleccionable", "arte", "antiguo", "vinilo", "libro", "reloj", "joya", "foto",
+            "edicion", "limitada", "firmada", "original", "replica", "batman", "spiderman", "naruto", "pokemon"};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatalogoSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void sembrar(int cantidad) {
+        Integer existentes = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM Products WHERE descripcion LIKE 'Bench %'", Integer.class);
+        if (existentes != null && existentes >= cantidad) {
+            return;
+        }
+        List<Long> categorias = jdbcTemplate.queryForList("SELECT id FROM Categories ORDER BY id", Long.class);
+        Long usuario = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'master'", Long.class);
+        Random random = new Random(42);
+
+        List<Object[]> lote = new ArrayList<>();
+        for (int i = existentes == null ? 0 : existentes; i < cantidad; i++) {
+            String descripcion = "Bench " + i + " " + palabra(random) + " " + palabra(random) + " " + palabra(random);
+            String detalles = palabra(random) + " " + palabra(random) + " " + palabra(random) + " " + palabra(random)
+                    + " " + palabra(random) + " " + palabra(random);
+            lote.add(new Object[]{descripcion, detalles, BigDecimal.valueOf(100 + random.nextInt(200_000), 2),
+                    random.nextInt(20), categorias.get(random.nextInt(categorias.size())), usuario,
+                    random.nextInt(500) == 0, null});
+            if (lote.size() == 1_000) {
+                insertar(lote);
+                lote.clear();
+            }
+        }
+        insertar(lote);
+    }
+
+    private void insertar(List<Object[]> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, " +
+                "user_creador_id, destacado, imagen_key) VALUES (nextval('products_seq'), ?, ?, ?, ?, ?, ?, ?, ?)", lote);
+    }
+
+    private static String palabra(Random random) {
+        return PALABRAS[random.nextInt(PALABRAS.length)];
+    }
+}
@@ -0,0 +1,88 @@
+package org.grupo1.markapbe.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ImportResultDTO;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Mide POST /productos/import con un CSV sintetico: primero todas filas nuevas (INSERT) y despues el mismo archivo
+ * otra vez (todo UPDATE). Incluye la reconstruccion de los indices en memoria que dispara la importacion.
+ * Correr con: mvn test -Pbenchmark -Dtest=ProductImportBenchmark [-Dbenchmark.productos=100000]
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark-importacion;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+class ProductImportBenchmark {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${benchmark.productos:100000}")
+    private int cantidadProductos;
+
+    @Test
+    void importarCsv() throws Exception {
+        String token = generadorToken.loginAndGetJwtToken("master", "4321");
+        byte[] csv = csv(cantidadProductos);
+
+        System.out.printf("%nCSV de %d productos, %.1f MB%n", cantidadProductos, csv.length / 1e6);
+        System.out.printf("%-12s %12s %12s %12s %12s%n", "pasada", "ms", "creadas", "actualizadas", "fallidas");
+        for (String pasada : new String[]{"insert", "upsert"}) {
+            long inicio = System.nanoTime();
+            String respuesta = mockMvc.perform(post("/productos/import")
+                            .header("Authorization", "Bearer " + token)
+                            .contentType("text/csv")
+                            .content(csv))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            long ms = (System.nanoTime() - inicio) / 1_000_000;
+            ImportResultDTO resultado = objectMapper.readValue(respuesta, ImportResultDTO.class);
+            System.out.printf("%-12s %12d %12d %12d %12d%n", pasada, ms, resultado.creadas(),
+                    resultado.actualizadas(), resultado.fallidas());
+            Assertions.assertEquals(0, resultado.fallidas());
+        }
+    }
+
+    private byte[] csv(int cantidad) {
+        List<String> categorias = jdbcTemplate.queryForList("SELECT nombre_categoria FROM Categories ORDER BY id", String.class);
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("descripcion,precio,detalles,stock,categoria\n");
+        for (int i = 0; i < cantidad; i++) {
+            csv.append("Importado ").append(i).append(',')
+                    .append(BigDecimal.valueOf(100 + random.nextInt(200_000), 2)).append(',')
+                    .append("\"Detalle, con coma ").append(i).append("\",")
+                    .append(random.nextInt(20)).append(',')
+                    .append('"').append(categorias.get(random.nextInt(categorias.size()))).append("\"\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package org.grupo1.markapbe.benchmark;
+
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.ProductService;
+import org.grupo1.markapbe.service.search.ProductSearchIndexer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Compara la latencia de la busqueda con LIKE sobre la descripcion contra el indice invertido en memoria
+ * y contra la busqueda aproximada por trigramas.
+ * Correr con: mvn test -Pbenchmark -Dtest=ProductSearchBenchmark [-Dbenchmark.productos=100000]
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark-busqueda;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+class ProductSearchBenchmark {
+
+    private static final int ITERACIONES = 30;
+    private static final int TAMANIO_PAGINA = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductSearchIndexer productSearchIndexer;
+
+    @Value("${benchmark.productos:100000}")
+    private int cantidadProductos;
+
+    @Test
+    void busquedaPorTexto() {
+        new CatalogoSeeder(jdbcTemplate).sembrar(cantidadProductos);
+        // el seeder inserta por JDBC sin eventos, el indice se reconstruye como en el arranque
+        long inicio = System.nanoTime();
+        productSearchIndexer.reconstruir();
+        System.out.printf("%nCatalogo sembrado: %d productos, reconstruccion del indice %.1f ms%n",
+                cantidadProductos, (System.nanoTime() - inicio) / 1e6);
+
+        System.out.printf("%-30s %-8s %12s %12s%n", "consulta", "modo", "mediana ms", "resultados");
+        for (String consulta : new String[]{"batman", "figura coleccionable", "edicion limitada firmada"}) {
+            PageRequest pageRequest = PageRequest.of(0, TAMANIO_PAGINA);
+            medir(consulta, "like", () -> productRepository.findCardsByDescripcion(consulta, pageRequest));
+            medir(consulta, "indice", () -> productService.getSearchedProducts(consulta, pageRequest, false));
+        }
+        // con errores de tipeo el LIKE no encuentra nada, la busqueda aproximada si
+        for (String consulta : new String[]{"btaman", "figrua colecionable", "edicon limitda firmda"}) {
+            PageRequest pageRequest = PageRequest.of(0, TAMANIO_PAGINA);
+            medir(consulta, "like", () -> productRepository.findCardsByDescripcion(consulta, pageRequest));
+            medir(consulta, "fuzzy", () -> productService.getSearchedProducts(consulta, pageRequest, true));
+        }
+    }
+
+    private void medir(String consulta, String modo, Supplier<Page<?>> busqueda) {
+        for (int i = 0; i < 5; i++) {
+            busqueda.get(); // calentamiento
+        }
+        long[] tiempos = new long[ITERACIONES];
+        Page<?> resultado = null;
+        for (int i = 0; i < ITERACIONES; i++) {
+            long inicio = System.nanoTime();
+            resultado = busqueda.get();
+            tiempos[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(tiempos);
+        System.out.printf("%-30s %-8s %12.3f %12d%n", consulta, modo, tiempos[ITERACIONES / 2] / 1e6,
+                resultado.getTotalElements());
+    }
+}
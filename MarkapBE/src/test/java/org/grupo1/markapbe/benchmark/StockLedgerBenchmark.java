@@ -0,0 +1,104 @@
+package org.grupo1.markapbe.benchmark;
+
+import org.grupo1.markapbe.service.ProductService;
+import org.grupo1.markapbe.service.inventario.StockLedger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mide compras por segundo de un solo producto caliente desde muchos hilos: con el descuento condicional en la base
+ * (todas esperan el lock de la misma fila) y con el ledger en memoria (CAS sobre franjas mas un INSERT en el journal).
+ * Cada compra es una transaccion, como un checkout. Despues de cada pasada se aplica el journal y se verifica que
+ * Products quedo con el stock inicial menos lo vendido.
+ * Correr con: mvn test -Pbenchmark -Dtest=StockLedgerBenchmark [-Dbenchmark.compras=20000 -Dbenchmark.hilos=64]
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark-ledger;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+class StockLedgerBenchmark {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${benchmark.compras:20000}")
+    private int compras;
+
+    @Value("${benchmark.hilos:64}")
+    private int hilos;
+
+    @Test
+    void comprarProductoCaliente() throws Exception {
+        System.out.printf("%n%-8s %8s %10s %10s %12s %10s%n", "modo", "hilos", "compras", "ms", "compras/s", "stock ok");
+        for (int pasada = 0; pasada < 2; pasada++) {
+            medir("base", false);
+            medir("ledger", true);
+        }
+    }
+
+    private void medir(String modo, boolean ledger) throws Exception {
+        // la mitad de las compras se queda sin stock: se mide tambien el rechazo
+        int stockInicial = compras / 2;
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Benchmark ledger', 10.00, ?, 1, 1, false)", id, "Ledger " + id, stockInicial);
+        if (ledger) {
+            stockLedger.activar(id);
+        }
+
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger vendidas = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int i = 0; i < compras; i++) {
+            tareas.add(pool.submit(() -> {
+                largada.await();
+                if (Boolean.TRUE.equals(transaccion.execute(status -> productService.consumeStock(id, 1)))) {
+                    vendidas.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        long ms = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        pool.shutdown();
+
+        if (ledger) {
+            stockLedger.desactivar(id);
+        }
+        int stockFinal = jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id);
+        boolean consistente = vendidas.get() == stockInicial && stockFinal == 0;
+        System.out.printf("%-8s %8d %10d %10d %12d %10s%n", modo, hilos, compras, ms, compras * 1000L / ms, consistente);
+    }
+}
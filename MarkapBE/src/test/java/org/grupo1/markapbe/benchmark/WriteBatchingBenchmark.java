@@ -0,0 +1,161 @@
+package org.grupo1.markapbe.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.grupo1.markapbe.persistence.entity.CarritoEntity;
+import org.grupo1.markapbe.persistence.entity.ItemsCarritoEntity;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.entity.UserEntity;
+import org.grupo1.markapbe.persistence.entity.VisitedProductsEntity;
+import org.grupo1.markapbe.persistence.repository.CarritoRepository;
+import org.grupo1.markapbe.persistence.repository.ItemsCarritoRepository;
+import org.grupo1.markapbe.persistence.repository.VisitedProductsRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mide filas por segundo al guardar visitas y carritos con sus items en bloque, con el batch de JDBC apagado
+ * (una sentencia por fila, como con IDENTITY) y con el batch de 50 que habilitan las secuencias.
+ * Cada pasada guarda de a {@value #FILAS_POR_TRANSACCION} filas por transaccion y despues se borra lo escrito.
+ * Correr con: mvn test -Pbenchmark -Dtest=WriteBatchingBenchmark [-Dbenchmark.filas=20000]
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark-escrituras;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+class WriteBatchingBenchmark {
+
+    private static final int FILAS_POR_TRANSACCION = 1_000;
+    private static final int ITEMS_POR_CARRITO = 9;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private VisitedProductsRepository visitedProductsRepository;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private ItemsCarritoRepository itemsCarritoRepository;
+
+    @Value("${benchmark.filas:20000}")
+    private int cantidadFilas;
+
+    @Test
+    void escribirCarritosYVisitas() {
+        // una visita por producto: (usuario, producto) es unico
+        new CatalogoSeeder(jdbcTemplate).sembrar(cantidadFilas);
+        List<Long> productos = jdbcTemplate.queryForList("SELECT id FROM Products ORDER BY id LIMIT ?", Long.class,
+                cantidadFilas);
+        Long usuario = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'master'", Long.class);
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+
+        System.out.printf("%n%-16s %-8s %10s %10s %12s %12s%n", "carga", "batch", "filas", "ms", "filas/s", "sentencias");
+        try {
+            for (int batch : new int[]{1, 50, 1, 50}) {
+                medir("visitas", batch, estadisticas, () -> guardarVisitas(usuario, productos, batch));
+                medir("carritos+items", batch, estadisticas, () -> guardarCarritos(usuario, productos, batch));
+            }
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
+
+    private void medir(String carga, int batch, Statistics estadisticas, Escritura escritura) {
+        estadisticas.clear();
+        long inicio = System.nanoTime();
+        int filas = escritura.escribir();
+        long ms = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        System.out.printf("%-16s %-8d %10d %10d %12d %12d%n", carga, batch, filas, ms, filas * 1000L / ms,
+                estadisticas.getPrepareStatementCount());
+        jdbcTemplate.update("DELETE FROM items_carrito");
+        jdbcTemplate.update("DELETE FROM carrito");
+        jdbcTemplate.update("DELETE FROM visited_products");
+    }
+
+    private int guardarVisitas(Long usuario, List<Long> productos, int batch) {
+        for (int desde = 0; desde < productos.size(); desde += FILAS_POR_TRANSACCION) {
+            List<Long> tramo = productos.subList(desde, Math.min(desde + FILAS_POR_TRANSACCION, productos.size()));
+            enTransaccion(batch, () -> {
+                List<VisitedProductsEntity> visitas = new ArrayList<>(tramo.size());
+                for (Long producto : tramo) {
+                    visitas.add(VisitedProductsEntity.builder()
+                            .user(entityManager.getReference(UserEntity.class, usuario))
+                            .product(entityManager.getReference(ProductEntity.class, producto))
+                            .build());
+                }
+                visitedProductsRepository.saveAll(visitas);
+            });
+        }
+        return productos.size();
+    }
+
+    private int guardarCarritos(Long usuario, List<Long> productos, int batch) {
+        int carritosPorTransaccion = FILAS_POR_TRANSACCION / (ITEMS_POR_CARRITO + 1);
+        int carritos = productos.size() / (ITEMS_POR_CARRITO + 1);
+        for (int desde = 0; desde < carritos; desde += carritosPorTransaccion) {
+            int primero = desde;
+            int hasta = Math.min(desde + carritosPorTransaccion, carritos);
+            enTransaccion(batch, () -> {
+                List<CarritoEntity> nuevos = new ArrayList<>();
+                List<ItemsCarritoEntity> items = new ArrayList<>();
+                for (int c = primero; c < hasta; c++) {
+                    CarritoEntity carrito = CarritoEntity.builder()
+                            .User(entityManager.getReference(UserEntity.class, usuario))
+                            .build();
+                    nuevos.add(carrito);
+                    for (int i = 0; i < ITEMS_POR_CARRITO; i++) {
+                        items.add(ItemsCarritoEntity.builder()
+                                .carrito(carrito)
+                                .product(entityManager.getReference(ProductEntity.class,
+                                        productos.get(c * ITEMS_POR_CARRITO + i)))
+                                .amount(1 + i % 3)
+                                .build());
+                    }
+                }
+                carritoRepository.saveAll(nuevos);
+                itemsCarritoRepository.saveAll(items);
+            });
+        }
+        return carritos * (ITEMS_POR_CARRITO + 1);
+    }
+
+    private void enTransaccion(int batch, Runnable trabajo) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batch);
+            trabajo.run();
+        });
+    }
+
+    private interface Escritura {
+        int escribir();
+    }
+}
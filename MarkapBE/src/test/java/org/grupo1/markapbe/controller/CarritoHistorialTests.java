@@ -0,0 +1,141 @@
+package org.grupo1.markapbe.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Historial de pedidos paginado con los totales de cada carrito calculados en la base.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CarritoHistorialTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void HistorialConTotalesPorPedido() throws Exception {
+        // lo que dejaron otros tests en el carrito de master no tiene que entrar en los pedidos de este
+        if (mockMvc.perform(get("/carrito/actual").header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getStatus() == 200) {
+            pagar();
+        }
+        Long caro = crearProducto("25.50");
+        Long barato = crearProducto("4.00");
+        agregar(caro, 2);
+        agregar(barato, 3);
+        Long primero = pagar();
+        agregar(barato, 1);
+        Long segundo = pagar();
+        // un carrito pagado sin items (por ejemplo, un pedido viejo) tambien es parte del historial
+        Long vacio = jdbcTemplate.queryForObject("SELECT nextval('carrito_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO carrito (id, payment_status, user_id, fecha_pagado) " +
+                "SELECT ?, true, id, CURRENT_TIMESTAMP FROM users WHERE username = 'master'", vacio);
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        estadisticas.setStatisticsEnabled(true);
+        JsonNode pagina;
+        try {
+            pagina = objectMapper.readTree(mockMvc.perform(get("/carrito/historial/resumen").param("size", "100")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            // la pagina y, si hace falta, el total de elementos: ninguna consulta por carrito
+            Assertions.assertTrue(estadisticas.getPrepareStatementCount() <= 2);
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+
+        JsonNode pedidoPrimero = buscar(pagina, primero);
+        Assertions.assertEquals(2, pedidoPrimero.get("itemCount").asLong());
+        Assertions.assertEquals(5, pedidoPrimero.get("amount").asLong());
+        Assertions.assertEquals(0, new BigDecimal("63.00").compareTo(pedidoPrimero.get("total").decimalValue()));
+
+        JsonNode pedidoSegundo = buscar(pagina, segundo);
+        Assertions.assertEquals(1, pedidoSegundo.get("itemCount").asLong());
+        Assertions.assertEquals(0, new BigDecimal("4.00").compareTo(pedidoSegundo.get("total").decimalValue()));
+
+        JsonNode pedidoVacio = buscar(pagina, vacio);
+        Assertions.assertEquals(0, pedidoVacio.get("itemCount").asLong());
+        Assertions.assertEquals(0, pedidoVacio.get("amount").asLong());
+        Assertions.assertEquals(0, BigDecimal.ZERO.compareTo(pedidoVacio.get("total").decimalValue()));
+        Assertions.assertEquals(pagina.get("content").size(), pagina.get("totalElements").asInt());
+    }
+
+    @Test
+    void PaginaInvalida() throws Exception {
+        mockMvc.perform(get("/carrito/historial/resumen").param("size", "0").header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/carrito/historial/resumen").param("pagina", "-1").header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode buscar(JsonNode pagina, Long carritoId) {
+        for (JsonNode pedido : pagina.get("content")) {
+            if (pedido.get("id").asLong() == carritoId) {
+                return pedido;
+            }
+        }
+        return Assertions.fail("El carrito " + carritoId + " no esta en el historial");
+    }
+
+    private void agregar(Long id, int cantidad) throws Exception {
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", String.valueOf(cantidad))
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private Long pagar() throws Exception {
+        String cuerpo = mockMvc.perform(put("/carrito/actual/paid").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode carrito = objectMapper.readTree(cuerpo).get("carrito");
+        Assertions.assertTrue(carrito.get("paymentStatus").asBoolean());
+        return carrito.get("id").asLong();
+    }
+
+    private Long crearProducto(String precio) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de historial', ?, 20, 1, 1, false)", id, "Historial " + id, new BigDecimal(precio));
+        return id;
+    }
+}
@@ -0,0 +1,88 @@
+package org.grupo1.markapbe.controller;
+
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CarritoReservationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void AgregarAlCarritoReservaStock() throws Exception {
+        Long id = crearProducto(3);
+
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", "2").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/productos/" + id + "/disponibilidad"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stock").value(3))
+                .andExpect(jsonPath("$.reservado").value(2))
+                .andExpect(jsonPath("$.disponible").value(1));
+
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", "2").header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put("/carrito/remove/" + id).param("amount", "2").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/productos/" + id + "/disponibilidad"))
+                .andExpect(jsonPath("$.reservado").value(0))
+                .andExpect(jsonPath("$.disponible").value(3));
+    }
+
+    @Test
+    void CheckoutConvierteLaReservaEnVenta() throws Exception {
+        Long id = crearProducto(2);
+
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", "2").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/carrito/actual/paid").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.carrito.paymentStatus").value(true));
+
+        mockMvc.perform(get("/productos/" + id + "/disponibilidad"))
+                .andExpect(jsonPath("$.stock").value(0))
+                .andExpect(jsonPath("$.reservado").value(0));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id));
+    }
+
+    @Test
+    void DisponibilidadDeProductoInexistente() throws Exception {
+        mockMvc.perform(get("/productos/999999999/disponibilidad"))
+                .andExpect(status().isNotFound());
+    }
+
+    private Long crearProducto(int stock) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de reservas', 10.00, ?, 1, 1, false)", id, "Reserva " + id, stock);
+        return id;
+    }
+}
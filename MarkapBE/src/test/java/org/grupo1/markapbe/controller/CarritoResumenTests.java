@@ -0,0 +1,131 @@
+package org.grupo1.markapbe.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.grupo1.markapbe.service.ProductDetailCache;
+import org.grupo1.markapbe.service.carrito.CartStore;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Resumen del carrito activo desde los totales en memoria, con el precio de cada item al agregarlo.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CarritoResumenTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ProductDetailCache productDetailCache;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void ResumenConPrecioAlAgregar() throws Exception {
+        Long remera = crearProducto("12.50");
+        Long gorra = crearProducto("8.00");
+        agregar(remera, 2);
+        JsonNode antes = resumen();
+
+        agregar(gorra, 3);
+        // el precio cambia despues de agregar: el item conserva el que tenia
+        jdbcTemplate.update("UPDATE Products SET precio = 99.00 WHERE id = ?", remera);
+        productDetailCache.invalidar(remera);
+        agregar(remera, 1);
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        estadisticas.setStatisticsEnabled(true);
+        JsonNode despues;
+        try {
+            despues = resumen();
+            Assertions.assertEquals(0, estadisticas.getPrepareStatementCount());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+        Assertions.assertEquals(1, despues.get("itemCount").asLong() - antes.get("itemCount").asLong());
+        Assertions.assertEquals(4, despues.get("amount").asLong() - antes.get("amount").asLong());
+        Assertions.assertEquals(0, new BigDecimal("36.50").compareTo(
+                despues.get("total").decimalValue().subtract(antes.get("total").decimalValue())));
+
+        // la escritura deja los mismos totales en la fila del carrito
+        cartStore.escribirPendientes();
+        Map<String, Object> fila = jdbcTemplate.queryForMap(
+                "SELECT cantidad_items, unidades, total FROM carrito WHERE id = ?", despues.get("id").asLong());
+        Assertions.assertEquals(despues.get("itemCount").asInt(), ((Number) fila.get("cantidad_items")).intValue());
+        Assertions.assertEquals(despues.get("amount").asInt(), ((Number) fila.get("unidades")).intValue());
+        Assertions.assertEquals(0, despues.get("total").decimalValue().compareTo((BigDecimal) fila.get("total")));
+        Assertions.assertEquals(0, new BigDecimal("12.50").compareTo(jdbcTemplate.queryForObject(
+                "SELECT precio_unitario FROM items_carrito WHERE product_id = ?", BigDecimal.class, remera)));
+
+        quitar(remera, 3);
+        quitar(gorra, 3);
+        JsonNode alFinal = resumen();
+        Assertions.assertEquals(0, antes.get("total").decimalValue().subtract(new BigDecimal("25.00"))
+                .compareTo(alFinal.get("total").decimalValue()));
+    }
+
+    private JsonNode resumen() throws Exception {
+        return objectMapper.readTree(mockMvc.perform(get("/carrito/actual/summary").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private void agregar(Long id, int cantidad) throws Exception {
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", String.valueOf(cantidad))
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private void quitar(Long id, int cantidad) throws Exception {
+        mockMvc.perform(put("/carrito/remove/" + id).param("amount", String.valueOf(cantidad))
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private Long crearProducto(String precio) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de resumen', ?, 20, 1, 1, false)", id, "Resumen " + id, new BigDecimal(precio));
+        return id;
+    }
+}
@@ -0,0 +1,158 @@
+package org.grupo1.markapbe.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.grupo1.markapbe.service.carrito.CartStore;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Los clicks del carrito se resuelven en memoria; la base se pone al dia al leer los items, al pagar o en la
+ * escritura periodica.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CartStoreTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void ClicksDelCarritoSinConsultas() throws Exception {
+        Long id = crearProducto(10);
+        agregar(id);
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        estadisticas.setStatisticsEnabled(true);
+        try {
+            agregar(id);
+            agregar(id);
+            Assertions.assertEquals(0, estadisticas.getPrepareStatementCount());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+
+        // leer los items escribe antes el carrito
+        mockMvc.perform(get("/carrito/actual/items").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[?(@.product.id == " + id + ")].amount").value(3));
+        Long carritoId = jdbcTemplate.queryForObject("SELECT carrito_id FROM items_carrito WHERE product_id = ?", Long.class, id);
+        Assertions.assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT amount FROM items_carrito WHERE carrito_id = ? AND product_id = ?", Integer.class, carritoId, id));
+
+        mockMvc.perform(put("/carrito/remove/" + id).param("amount", "3").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/carrito/actual").header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+
+        // la escritura periodica borra el item y el carrito vacio
+        cartStore.escribirPendientes();
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM carrito WHERE id = ?", Integer.class, carritoId));
+    }
+
+    @Test
+    void CheckoutEscribeElCarritoAntesDePagar() throws Exception {
+        Long id = crearProducto(4);
+        agregar(id);
+        agregar(id);
+
+        mockMvc.perform(put("/carrito/actual/paid").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.carrito.paymentStatus").value(true));
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id));
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT ic.amount FROM items_carrito ic JOIN carrito c ON c.id = ic.carrito_id " +
+                        "WHERE ic.product_id = ? AND c.payment_status = true", Integer.class, id));
+    }
+
+    @Test
+    void ProductoBorradoSaleDelCarrito() throws Exception {
+        Long queda = crearProducto(10);
+        Long borrado = crearProducto(10);
+        agregar(queda);
+        agregar(borrado);
+
+        eventPublisher.publishEvent(new ProductChangedEvent(borrado, null, ProductChangedEvent.Tipo.ELIMINADO, 1L));
+        Assertions.assertEquals(0, cartStore.obtener("master", null).orElseThrow().cantidad(borrado));
+        Assertions.assertEquals(1, cartStore.obtener("master", null).orElseThrow().cantidad(queda));
+
+        cartStore.escribirPendientes();
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM items_carrito WHERE product_id = ?", Integer.class, borrado));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT amount FROM items_carrito WHERE product_id = ?", Integer.class, queda));
+        jdbcTemplate.update("DELETE FROM Products WHERE id = ?", borrado);
+        vaciar(queda, 1);
+    }
+
+    @Test
+    void ProductoBorradoSinEventoNoTrabaLaEscritura() throws Exception {
+        Long queda = crearProducto(10);
+        Long borrado = crearProducto(10);
+        agregar(queda);
+        agregar(borrado);
+        // el producto se borra antes de que el carrito llegue a la base y sin avisar al store
+        jdbcTemplate.update("DELETE FROM items_carrito WHERE product_id = ?", borrado);
+        jdbcTemplate.update("DELETE FROM Products WHERE id = ?", borrado);
+        agregar(queda);
+
+        cartStore.escribirPendientes();
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject("SELECT amount FROM items_carrito WHERE product_id = ?", Integer.class, queda));
+        Assertions.assertEquals(0, cartStore.obtener("master", null).orElseThrow().cantidad(borrado));
+        vaciar(queda, 2);
+    }
+
+    private void vaciar(Long id, int cantidad) throws Exception {
+        mockMvc.perform(put("/carrito/remove/" + id).param("amount", String.valueOf(cantidad)).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        cartStore.escribirPendientes();
+    }
+
+    private void agregar(Long id) throws Exception {
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", "1").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private Long crearProducto(int stock) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de carrito en memoria', 10.00, ?, 1, 1, false)", id, "Carrito " + id, stock);
+        return id;
+    }
+}
@@ -0,0 +1,112 @@
+package org.grupo1.markapbe.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.SearchByNameDTO;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Cuenta las sentencias SQL de cada endpoint del catalogo con las estadisticas de Hibernate. Si un mapeo vuelve a
+ * tocar una relacion LAZY por fila (N+1), la cantidad pasa a depender del tamaño de la pagina y el test falla.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CatalogQueryCountTests {
+
+    // una consulta para los datos y, en los listados paginados, otra para el total
+    private static final long MAX_SENTENCIAS = 2;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Statistics estadisticas;
+
+
+    // se prenden solo durante estos tests, asi comparten el contexto (y la base en memoria) con los demas
+    @BeforeEach
+    void setUp() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        estadisticas.setStatisticsEnabled(false);
+    }
+
+
+    @Test
+    void ListadoDeProductos() throws Exception {
+        assertSentencias(get("/productos"));
+    }
+
+    @Test
+    void DetalleDeProducto() throws Exception {
+        assertSentencias(get("/productos/1"));
+    }
+
+    @Test
+    void ProductosDestacados() throws Exception {
+        assertSentencias(get("/productos/destacados"));
+    }
+
+    @Test
+    void Categorias() throws Exception {
+        assertSentencias(get("/productos/categoria"));
+    }
+
+    @Test
+    void ProductosPorCategoria() throws Exception {
+        assertSentencias(get("/productos/categoria/1").param("size", "20"));
+        assertSentencias(get("/productos/categoria/1/cursor").param("size", "20"));
+    }
+
+    @Test
+    void BusquedaPorNombre() throws Exception {
+        String cuerpo = new ObjectMapper().writeValueAsString(new SearchByNameDTO("figura"));
+        assertSentencias(post("/productos/search").contentType(MediaType.APPLICATION_JSON).content(cuerpo));
+    }
+
+    @Test
+    void FiltroConFacetas() throws Exception {
+        assertSentencias(get("/productos/filtro").param("size", "20"));
+    }
+
+
+    // Vacia los caches antes de medir para que el pedido llegue a la base, los indices en memoria se cargan con
+    // un primer pedido que no se cuenta
+    private void assertSentencias(RequestBuilder pedido) throws Exception {
+        mockMvc.perform(pedido).andExpect(status().isOk());
+        cacheManager.getCacheNames().forEach(nombre -> cacheManager.getCache(nombre).clear());
+        estadisticas.clear();
+
+        mockMvc.perform(pedido).andExpect(status().isOk());
+
+        long sentencias = estadisticas.getPrepareStatementCount();
+        Assertions.assertTrue(sentencias <= MAX_SENTENCIAS,
+                "Se ejecutaron " + sentencias + " sentencias, el maximo es " + MAX_SENTENCIAS);
+    }
+}
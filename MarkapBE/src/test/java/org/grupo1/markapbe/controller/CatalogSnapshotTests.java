@@ -0,0 +1,153 @@
+package org.grupo1.markapbe.controller;
+
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CatalogSnapshotTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void DestacadosEnGzipIgualAlJson() throws Exception {
+        MvcResult gzip = mockMvc.perform(get("/productos/destacados").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn();
+        MvcResult json = mockMvc.perform(get("/productos/destacados"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$[0].id").exists())
+                .andReturn();
+
+        byte[] descomprimido = new GZIPInputStream(new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray())).readAllBytes();
+        Assertions.assertArrayEquals(json.getResponse().getContentAsByteArray(), descomprimido);
+
+        // cada codificacion con su ETag: el de gzip no revalida la respuesta sin comprimir
+        String etagGzip = gzip.getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotEquals(json.getResponse().getHeader(HttpHeaders.ETAG), etagGzip);
+        mockMvc.perform(get("/productos/destacados").header(HttpHeaders.IF_NONE_MATCH, etagGzip))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/productos/destacados").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, etagGzip))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void GzipConQCeroNoSeComprime() throws Exception {
+        mockMvc.perform(get("/productos/destacados").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+        mockMvc.perform(get("/productos/destacados").header(HttpHeaders.ACCEPT_ENCODING, "br, *;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+    }
+
+    @Test
+    void DetalleInexistenteConETagDaNotFound() throws Exception {
+        String token = generadorToken.loginAndGetJwtToken("master", "4321");
+        Long id = jdbcTemplate.queryForObject("SELECT min(id) FROM Products", Long.class);
+        String etag = mockMvc.perform(get("/productos/" + id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/productos/" + id).header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotModified());
+        // el ETag es del catalogo: con un id que no existe no revalida ni registra la visita
+        mockMvc.perform(get("/productos/999999999").header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void PaginaDeCategoria() throws Exception {
+        Integer total = jdbcTemplate.queryForObject("SELECT count(*) FROM Products WHERE id_categoria = 3", Integer.class);
+
+        mockMvc.perform(get("/productos/categoria/3").param("page", "1").param("size", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(4))
+                .andExpect(jsonPath("$.totalElements").value(total));
+    }
+
+    @Test
+    void DestacarProductoRearmaElSnapshot() throws Exception {
+        String token = generadorToken.loginAndGetJwtToken("master", "4321");
+        Long id = jdbcTemplate.queryForObject("SELECT min(id) FROM Products WHERE destacado = false", Long.class);
+        String etagAnterior = mockMvc.perform(get("/productos/destacados"))
+                .andExpect(jsonPath("$[?(@.id == " + id + ")]").isEmpty())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(patch("/productos/" + id).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        String etagNuevo = mockMvc.perform(get("/productos/destacados"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == " + id + ")]").isNotEmpty())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotEquals(etagAnterior, etagNuevo);
+    }
+
+    @Test
+    void VentaSoloCambiaLosETagsQueMuestranElProducto() throws Exception {
+        Long id = jdbcTemplate.queryForObject("SELECT min(id) FROM Products WHERE id_categoria = 1", Long.class);
+        ProductEntity producto = productRepository.findById(id).orElseThrow();
+        String categoriaVendida = etag("/productos/categoria/1");
+        String otraCategoria = etag("/productos/categoria/3");
+        String categorias = etag("/productos/categoria");
+        String detalle = etag("/productos/" + id);
+
+        eventPublisher.publishEvent(new ProductChangedEvent(id, producto, ProductChangedEvent.Tipo.STOCK, 1L));
+
+        Assertions.assertNotEquals(categoriaVendida, etag("/productos/categoria/1"));
+        Assertions.assertNotEquals(detalle, etag("/productos/" + id));
+        Assertions.assertEquals(otraCategoria, etag("/productos/categoria/3"));
+        Assertions.assertEquals(categorias, etag("/productos/categoria"));
+    }
+
+
+    private String etag(String url) throws Exception {
+        return mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
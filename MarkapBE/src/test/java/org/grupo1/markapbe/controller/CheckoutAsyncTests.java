@@ -0,0 +1,104 @@
+package org.grupo1.markapbe.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checkout encolado: la peticion devuelve un ticket y el pago lo hace un worker.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CheckoutAsyncTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void CheckoutEncoladoSeConfirma() throws Exception {
+        Long id = crearProducto(5);
+        mockMvc.perform(put("/carrito/add/" + id).param("amount", "2").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        String clave = "checkout-" + id;
+        MvcResult encolado = mockMvc.perform(post("/carrito/actual/checkout").header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", clave))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn();
+        String cuerpo = encolado.getResponse().getContentAsString();
+        JsonNode ticket = objectMapper.readTree(cuerpo);
+
+        // el reintento con la misma clave devuelve el mismo ticket, con su Location
+        mockMvc.perform(post("/carrito/actual/checkout").header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", clave))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(header().string("Location", encolado.getResponse().getHeader("Location")))
+                .andExpect(jsonPath("$.ticket").value(ticket.get("ticket").asText()));
+        Long carritoId = ticket.get("carritoId").asLong();
+
+        MvcResult espera = mockMvc.perform(get("/carrito/checkout/" + ticket.get("ticket").asText() + "/resultado")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(espera))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.estado").value("CONFIRMADO"))
+                .andExpect(jsonPath("$.carritoId").value(carritoId));
+
+        Assertions.assertEquals(3, jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id));
+        Assertions.assertTrue(jdbcTemplate.queryForObject("SELECT payment_status FROM carrito WHERE id = ?", Boolean.class, carritoId));
+
+        mockMvc.perform(get("/carrito/checkout/" + ticket.get("ticket").asText()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.estado").value("CONFIRMADO"));
+    }
+
+    @Test
+    void TicketInexistente() throws Exception {
+        mockMvc.perform(get("/carrito/checkout/no-existe").header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+    }
+
+    private Long crearProducto(int stock) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de checkout encolado', 10.00, ?, 1, 1, false)", id, "Checkout " + id, stock);
+        return id;
+    }
+}
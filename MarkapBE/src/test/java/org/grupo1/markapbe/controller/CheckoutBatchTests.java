@@ -0,0 +1,151 @@
+package org.grupo1.markapbe.controller;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * El checkout trae los items con sus productos en un SELECT y descuenta todo en un lote: la cantidad de sentencias
+ * no depende de cuantos items tenga el carrito.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CheckoutBatchTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void CheckoutConCantidadDeSentenciasConstante() throws Exception {
+        List<Long> chico = cargarCarrito(2);
+        long sentenciasChico = pagarContandoSentencias();
+        List<Long> grande = cargarCarrito(8);
+        long sentenciasGrande = pagarContandoSentencias();
+
+        Assertions.assertEquals(sentenciasChico, sentenciasGrande);
+        for (Long id : chico) {
+            Assertions.assertEquals(3, stock(id));
+        }
+        for (Long id : grande) {
+            Assertions.assertEquals(3, stock(id));
+        }
+    }
+
+    @Test
+    void CheckoutSinStockNoDescuentaNada() throws Exception {
+        List<Long> ids = cargarCarrito(3);
+        jdbcTemplate.update("UPDATE Products SET stock = 1 WHERE id = ?", ids.get(2));
+
+        mockMvc.perform(put("/carrito/actual/paid").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value(startsWith("Error al Actualizar")));
+        Assertions.assertEquals(5, stock(ids.get(0)));
+        Assertions.assertEquals(5, stock(ids.get(1)));
+
+        // el carrito quedo ajustado al stock que hay: se paga para no dejarlo a los demas tests
+        mockMvc.perform(put("/carrito/actual/paid").header("Authorization", "Bearer " + token))
+                .andExpect(jsonPath("$.carrito.paymentStatus").value(true));
+        Assertions.assertEquals(0, stock(ids.get(2)));
+    }
+
+    @Test
+    void LoteSoloSacaDelContextoLosProductosDescontados() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+            jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                    "VALUES (?, ?, 'Prueba de checkout', 10.00, 5, 1, 1, false)", id, "Checkout " + id);
+            ids.add(id);
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ProductEntity descontado = productRepository.findById(ids.get(0)).orElseThrow();
+            ProductEntity otro = productRepository.findById(ids.get(1)).orElseThrow();
+
+            Assertions.assertTrue(productRepository.descontarStockEnLote(new TreeMap<>(Map.of(ids.get(0), 2))).isEmpty());
+
+            Assertions.assertFalse(entityManager.contains(descontado));
+            Assertions.assertEquals(3, productRepository.findById(ids.get(0)).orElseThrow().getStock());
+            Assertions.assertTrue(entityManager.contains(otro));
+        });
+    }
+
+    private List<Long> cargarCarrito(int items) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+            jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                    "VALUES (?, ?, 'Prueba de checkout', 10.00, 5, 1, 1, false)", id, "Checkout " + id);
+            mockMvc.perform(put("/carrito/add/" + id).param("amount", "2").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private long pagarContandoSentencias() throws Exception {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        estadisticas.setStatisticsEnabled(true);
+        try {
+            mockMvc.perform(put("/carrito/actual/paid").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.carrito.paymentStatus").value(true));
+            return estadisticas.getPrepareStatementCount();
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
+
+    private int stock(Long id) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id);
+    }
+}
@@ -0,0 +1,47 @@
+package org.grupo1.markapbe.controller;
+
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Los favoritos se devuelven como las tarjetas del catalogo: con la URL de la imagen, no con su clave.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class FavoritosTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void FavoritoConUrlDeImagen() throws Exception {
+        String token = generadorToken.loginAndGetJwtToken("master", "4321");
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, imagen_key, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, 'abc123', ?, 'Prueba de favoritos', 10.00, 3, 1, 1, false)", id, "Favorito " + id);
+
+        mockMvc.perform(post("/productos/liked/" + id).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/productos/liked/").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == " + id + ")].imagen").value("/productos/" + id + "/imagen?variante=thumbnail"))
+                .andExpect(jsonPath("$[?(@.id == " + id + ")].imagenKey").doesNotExist());
+    }
+}
@@ -0,0 +1,148 @@
+package org.grupo1.markapbe.controller;
+
+import org.grupo1.markapbe.utils.GeneradorToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Reintentos con Idempotency-Key en el carrito: se ejecutan una sola vez y devuelven la respuesta original.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class IdempotencyTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GeneradorToken generadorToken;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String token;
+
+    @BeforeEach
+    void login() throws Exception {
+        token = generadorToken.loginAndGetJwtToken("master", "4321");
+    }
+
+    @Test
+    void ReintentoDevuelveLaRespuestaOriginal() throws Exception {
+        Long id = crearProducto(10);
+        String clave = UUID.randomUUID().toString();
+
+        String original = mockMvc.perform(agregar(id, clave))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andReturn().getResponse().getContentAsString();
+        String repetida = mockMvc.perform(agregar(id, clave))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertEquals(original, repetida);
+        Assertions.assertEquals(1, cantidadEnCarrito(id));
+
+        // la misma clave en otra peticion no devuelve la respuesta guardada
+        mockMvc.perform(put("/carrito/remove/" + id).param("amount", "1")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", clave))
+                .andExpect(status().isUnprocessableEntity());
+        Assertions.assertEquals(1, cantidadEnCarrito(id));
+
+        quitar(id);
+    }
+
+    @Test
+    void ReintentosConcurrentesSeEjecutanUnaVez() throws Exception {
+        Long id = crearProducto(10);
+        String clave = UUID.randomUUID().toString();
+        int reintentos = 6;
+
+        ExecutorService executor = Executors.newFixedThreadPool(reintentos);
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<MvcResult>> resultados = new ArrayList<>();
+            for (int i = 0; i < reintentos; i++) {
+                resultados.add(executor.submit(() -> {
+                    largada.await();
+                    return mockMvc.perform(agregar(id, clave)).andReturn();
+                }));
+            }
+            largada.countDown();
+
+            int repetidas = 0;
+            for (Future<MvcResult> resultado : resultados) {
+                MvcResult mvcResult = resultado.get();
+                Assertions.assertEquals(200, mvcResult.getResponse().getStatus());
+                if ("true".equals(mvcResult.getResponse().getHeader("Idempotent-Replayed"))) {
+                    repetidas++;
+                }
+            }
+            Assertions.assertEquals(reintentos - 1, repetidas);
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(1, cantidadEnCarrito(id));
+
+        quitar(id);
+    }
+
+    @Test
+    void ClaveInvalida() throws Exception {
+        mockMvc.perform(put("/carrito/add/1").param("amount", "1")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    private RequestBuilder agregar(Long id, String clave) {
+        return put("/carrito/add/" + id).param("amount", "1")
+                .header("Authorization", "Bearer " + token)
+                .header("Idempotency-Key", clave);
+    }
+
+    private void quitar(Long id) throws Exception {
+        mockMvc.perform(put("/carrito/remove/" + id).param("amount", "1").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    // leer los items escribe el carrito en la base
+    private int cantidadEnCarrito(Long id) throws Exception {
+        mockMvc.perform(get("/carrito/actual/items").param("size", "100").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[?(@.product.id == " + id + ")]").exists());
+        return jdbcTemplate.queryForObject("SELECT ic.amount FROM items_carrito ic JOIN carrito c ON c.id = ic.carrito_id " +
+                "WHERE ic.product_id = ? AND c.payment_status = false", Integer.class, id);
+    }
+
+    private Long crearProducto(int stock) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de Idempotency-Key', 10.00, ?, 1, 1, false)", id, "Idempotencia " + id, stock);
+        return id;
+    }
+}
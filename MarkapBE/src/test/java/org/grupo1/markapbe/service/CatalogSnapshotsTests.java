@@ -0,0 +1,69 @@
+package org.grupo1.markapbe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grupo1.markapbe.controller.dto.CatalogoDTO.ProductCardDTO;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Un snapshot que se estaba armando cuando confirmo una escritura no se sirve despues de la invalidacion.
+ */
+class CatalogSnapshotsTests {
+
+    @Test
+    void EscrituraDuranteLaCargaNoDejaElSnapshotViejo() throws Exception {
+        ProductService productService = Mockito.mock(ProductService.class);
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch seguir = new CountDownLatch(1);
+        Mockito.when(productService.getProductosByIdCategoria(Mockito.eq(3L), Mockito.any(Pageable.class)))
+                .thenAnswer(invocacion -> {
+                    cargando.countDown();
+                    Assertions.assertTrue(seguir.await(5, TimeUnit.SECONDS));
+                    return pagina("viejo");
+                })
+                .thenReturn(pagina("nuevo"));
+        CatalogSnapshots snapshots = new CatalogSnapshots(DataSize.ofMegabytes(1), 100, new CaffeineCacheManager());
+        ReflectionTestUtils.setField(snapshots, "productService", productService);
+        ReflectionTestUtils.setField(snapshots, "objectMapper", new ObjectMapper());
+
+        CompletableFuture<CatalogSnapshots.Snapshot> enCurso = CompletableFuture.supplyAsync(() -> snapshots.categoria(3L, 0, 10));
+        Assertions.assertTrue(cargando.await(5, TimeUnit.SECONDS));
+        // la escritura confirma mientras la pagina se arma con los datos de antes; limpiar las claves viejas espera a
+        // la carga en curso, asi que el listener corre en otro hilo y la carga sigue cuando subio la generacion
+        CompletableFuture<Void> escritura = CompletableFuture.runAsync(() ->
+                snapshots.onProductChanged(new ProductChangedEvent(7L, null, ProductChangedEvent.Tipo.ELIMINADO, 3L)));
+        AtomicLong generacion = ReflectionTestUtils.invokeMethod(snapshots, "generacion", 3L);
+        long limite = System.currentTimeMillis() + 5000;
+        while (generacion.get() == 0 && System.currentTimeMillis() < limite) {
+            Thread.onSpinWait();
+        }
+        Assertions.assertEquals(1, generacion.get());
+        seguir.countDown();
+        escritura.get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(new String(enCurso.get(5, TimeUnit.SECONDS).json()).contains("viejo"));
+
+        Assertions.assertTrue(new String(snapshots.categoria(3L, 0, 10).json()).contains("nuevo"));
+        Assertions.assertTrue(new String(snapshots.categoria(3L, 0, 10).json()).contains("nuevo"));
+        Mockito.verify(productService, Mockito.times(2)).getProductosByIdCategoria(Mockito.eq(3L), Mockito.any(Pageable.class));
+    }
+
+    private static Page<ProductCardDTO> pagina(String descripcion) {
+        return new PageImpl<>(List.of(new ProductCardDTO(7L, null, descripcion, BigDecimal.TEN, 1, "Categoria", "master")), PageRequest.of(0, 10), 1);
+    }
+}
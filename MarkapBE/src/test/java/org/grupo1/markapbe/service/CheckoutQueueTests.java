@@ -0,0 +1,115 @@
+package org.grupo1.markapbe.service;
+
+import org.grupo1.markapbe.controller.dto.CarritoDTO.CarritoDTO;
+import org.grupo1.markapbe.service.pedido.CheckoutQueue;
+import org.grupo1.markapbe.service.pedido.PedidoCheckout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La cola de checkout es acotada: con la cola llena no se encola nada, y un usuario tiene un solo pedido pendiente.
+ */
+class CheckoutQueueTests {
+
+    @AfterEach
+    void limpiar() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void ColaLlenaNoEncola() throws Exception {
+        CarritoService carritoService = Mockito.mock(CarritoService.class);
+        Mockito.when(carritoService.getActiveCarritoDTO()).thenReturn(new CarritoDTO(1L, false, null));
+        CheckoutQueue checkoutQueue = new CheckoutQueue(2, 1, 10, Duration.ofSeconds(2), Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(checkoutQueue, "carritoService", carritoService);
+
+        // sin workers todavia: la cola solo se llena
+        PedidoCheckout primero = encolar(checkoutQueue, "ana").orElseThrow();
+        Assertions.assertSame(primero, encolar(checkoutQueue, "ana").orElseThrow());
+        encolar(checkoutQueue, "beto").orElseThrow();
+        Assertions.assertTrue(encolar(checkoutQueue, "carla").isEmpty());
+
+        checkoutQueue.iniciar();
+        try {
+            PedidoCheckout terminado = primero.resultado().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(PedidoCheckout.Estado.CONFIRMADO, terminado.getEstado());
+            Assertions.assertTrue(checkoutQueue.buscar(primero.getTicket(), "ana").isPresent());
+            Assertions.assertTrue(checkoutQueue.buscar(primero.getTicket(), "beto").isEmpty());
+
+            // al terminar el pedido el usuario puede volver a encolar
+            PedidoCheckout segundo = encolar(checkoutQueue, "ana").orElseThrow();
+            Assertions.assertNotEquals(primero.getTicket(), segundo.getTicket());
+            segundo.resultado().get(5, TimeUnit.SECONDS);
+        } finally {
+            checkoutQueue.detener();
+        }
+        Mockito.verify(carritoService, Mockito.times(3)).changeStatusCarritoToPaid();
+    }
+
+    @Test
+    void CheckoutFallidoSeRechaza() throws Exception {
+        CarritoService carritoService = Mockito.mock(CarritoService.class);
+        Mockito.when(carritoService.getActiveCarritoDTO()).thenReturn(new CarritoDTO(1L, false, null));
+        Mockito.when(carritoService.changeStatusCarritoToPaid())
+                .thenThrow(new IllegalArgumentException("No hay Stock Disponible de un item, se elimina el mismo del carrito."));
+        CheckoutQueue checkoutQueue = new CheckoutQueue(10, 1, 10, Duration.ofSeconds(2), Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(checkoutQueue, "carritoService", carritoService);
+        checkoutQueue.iniciar();
+        try {
+            PedidoCheckout pedido = encolar(checkoutQueue, "ana").orElseThrow().resultado().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(PedidoCheckout.Estado.RECHAZADO, pedido.getEstado());
+            Assertions.assertTrue(pedido.getMensaje().contains("No hay Stock Disponible"));
+        } finally {
+            checkoutQueue.detener();
+        }
+        Mockito.verify(carritoService).updateExistingStockItems();
+    }
+
+    @Test
+    void ErrorEnUnPedidoNoCortaElWorker() throws Exception {
+        CarritoService carritoService = Mockito.mock(CarritoService.class);
+        Mockito.when(carritoService.getActiveCarritoDTO()).thenReturn(new CarritoDTO(1L, false, null));
+        Mockito.when(carritoService.changeStatusCarritoToPaid()).thenThrow(new StackOverflowError()).thenReturn(true);
+        CheckoutQueue checkoutQueue = new CheckoutQueue(10, 1, 10, Duration.ofSeconds(2), Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(checkoutQueue, "carritoService", carritoService);
+
+        // los dos entran en el mismo lote del unico worker: el Error rechaza solo el primero
+        PedidoCheckout primero = encolar(checkoutQueue, "ana").orElseThrow();
+        PedidoCheckout segundo = encolar(checkoutQueue, "beto").orElseThrow();
+        checkoutQueue.iniciar();
+        try {
+            Assertions.assertEquals(PedidoCheckout.Estado.RECHAZADO, primero.resultado().get(5, TimeUnit.SECONDS).getEstado());
+            Assertions.assertEquals(PedidoCheckout.Estado.CONFIRMADO, segundo.resultado().get(5, TimeUnit.SECONDS).getEstado());
+            // el worker sigue vivo y el usuario puede volver a pedir el checkout
+            PedidoCheckout reintento = encolar(checkoutQueue, "ana").orElseThrow();
+            Assertions.assertEquals(PedidoCheckout.Estado.CONFIRMADO, reintento.resultado().get(5, TimeUnit.SECONDS).getEstado());
+        } finally {
+            checkoutQueue.detener();
+        }
+    }
+
+    @Test
+    void DetenidoNoConsultaElCarrito() throws Exception {
+        CarritoService carritoService = Mockito.mock(CarritoService.class);
+        CheckoutQueue checkoutQueue = new CheckoutQueue(10, 1, 10, Duration.ofSeconds(2), Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(checkoutQueue, "carritoService", carritoService);
+        checkoutQueue.detener();
+
+        Assertions.assertTrue(encolar(checkoutQueue, "ana").isEmpty());
+        Mockito.verifyNoInteractions(carritoService);
+    }
+
+    private Optional<PedidoCheckout> encolar(CheckoutQueue checkoutQueue, String usuario) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(usuario, null));
+        return checkoutQueue.encolar();
+    }
+}
@@ -0,0 +1,77 @@
+package org.grupo1.markapbe.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cientos de compras simultaneas del mismo producto: se venden exactamente las unidades que habia, el stock
+ * termina en cero y nunca queda negativo.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class StockConcurrencyTests {
+
+    private static final int HILOS = 200;
+    private static final int COMPRAS = 400;
+    private static final int STOCK_INICIAL = 150;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void CompraConcurrenteNoSobrevende() throws Exception {
+        Long id = crearProducto(STOCK_INICIAL);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> compras = new ArrayList<>();
+        for (int i = 0; i < COMPRAS; i++) {
+            compras.add(hilos.submit(() -> {
+                largada.await();
+                return productService.consumeStock(id, 1);
+            }));
+        }
+
+        largada.countDown();
+        int exitosas = 0;
+        for (Future<Boolean> compra : compras) {
+            if (compra.get()) {
+                exitosas++;
+            }
+        }
+        hilos.shutdown();
+
+        Assertions.assertEquals(STOCK_INICIAL, exitosas);
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id));
+    }
+
+    @Test
+    void CompraSinStockSuficiente() {
+        Long id = crearProducto(2);
+
+        Assertions.assertFalse(productService.consumeStock(id, 3));
+        Assertions.assertTrue(productService.consumeStock(id, 2));
+        Assertions.assertFalse(productService.consumeStock(id, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> productService.consumeStock(id, 0));
+    }
+
+    private Long crearProducto(int stock) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de stock concurrente', 10.00, ?, 1, 1, false)", id, "Stock concurrente " + id, stock);
+        return id;
+    }
+}
@@ -0,0 +1,175 @@
+package org.grupo1.markapbe.service;
+
+import org.grupo1.markapbe.persistence.entity.ProductEntity;
+import org.grupo1.markapbe.persistence.repository.ProductRepository;
+import org.grupo1.markapbe.service.event.ProductChangedEvent;
+import org.grupo1.markapbe.service.inventario.StockLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Productos con el stock en el ledger en memoria: las compras concurrentes no sobrevenden, una compra deshecha
+ * devuelve las unidades y el journal lleva las ventas a Products.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class StockLedgerTests {
+
+    private static final int HILOS = 200;
+    private static final int COMPRAS = 400;
+    private static final int STOCK_INICIAL = 150;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void CompraConcurrenteEnElLedgerNoSobrevende() throws Exception {
+        Long id = crearProducto(STOCK_INICIAL);
+        stockLedger.activar(id);
+        try {
+            ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+            CountDownLatch largada = new CountDownLatch(1);
+            List<Future<Boolean>> compras = new ArrayList<>();
+            for (int i = 0; i < COMPRAS; i++) {
+                compras.add(hilos.submit(() -> {
+                    largada.await();
+                    return productService.consumeStock(id, 1);
+                }));
+            }
+            largada.countDown();
+            int exitosas = 0;
+            for (Future<Boolean> compra : compras) {
+                if (compra.get()) {
+                    exitosas++;
+                }
+            }
+            hilos.shutdown();
+
+            Assertions.assertEquals(STOCK_INICIAL, exitosas);
+            Assertions.assertEquals(0, stockLedger.stock(id, -1));
+
+            stockLedger.aplicarJournal();
+            Assertions.assertEquals(0, stockEnBase(id));
+            Assertions.assertEquals(0, pendienteEnJournal(id));
+        } finally {
+            stockLedger.desactivar(id);
+        }
+    }
+
+    @Test
+    void CompraDeshechaDevuelveAlLedger() {
+        Long id = crearProducto(5);
+        stockLedger.activar(id);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Assertions.assertTrue(productService.consumeStock(Map.of(id, 3)));
+                Assertions.assertFalse(productService.consumeStock(Map.of(id, 3)));
+                status.setRollbackOnly();
+            });
+
+            Assertions.assertEquals(5, stockLedger.stock(id, -1));
+            Assertions.assertEquals(0, pendienteEnJournal(id));
+        } finally {
+            stockLedger.desactivar(id);
+        }
+        Assertions.assertEquals(5, stockEnBase(id));
+    }
+
+    @Test
+    void EdicionConCompraEnCursoAjustaElLedger() {
+        Long id = crearProducto(5);
+        stockLedger.activar(id);
+        try {
+            // la edicion llega desde otra peticion mientras la compra sigue abierta; la compra se deshace
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Assertions.assertTrue(productService.consumeStock(Map.of(id, 3)));
+                editarStock(id, 8);
+                status.setRollbackOnly();
+            });
+            Assertions.assertEquals(8, stockLedger.stock(id, -1));
+
+            // ahora la compra confirma: sus unidades quedan vendidas sobre el stock editado
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Assertions.assertTrue(productService.consumeStock(Map.of(id, 3)));
+                editarStock(id, 10);
+            });
+            Assertions.assertEquals(7, stockLedger.stock(id, -1));
+        } finally {
+            stockLedger.desactivar(id);
+        }
+        Assertions.assertEquals(7, stockEnBase(id));
+    }
+
+    @Test
+    void JournalSinAplicarSeRecuperaAlActivar() {
+        // ventas que quedaron en el journal, como si la aplicacion se hubiera caido antes de aplicarlas
+        Long id = crearProducto(10);
+        jdbcTemplate.update("INSERT INTO stock_journal (id, id_producto, cantidad) VALUES (nextval('stock_journal_seq'), ?, 4)", id);
+
+        stockLedger.activar(id);
+        try {
+            Assertions.assertEquals(6, stockLedger.stock(id, -1));
+            stockLedger.aplicarJournal();
+            Assertions.assertEquals(6, stockEnBase(id));
+            Assertions.assertEquals(6, stockLedger.stock(id, -1));
+        } finally {
+            stockLedger.desactivar(id);
+        }
+        Assertions.assertFalse(stockLedger.administra(id));
+    }
+
+    private Long crearProducto(int stock) {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+        jdbcTemplate.update("INSERT INTO Products (id, descripcion, detalles, precio, stock, id_categoria, user_creador_id, destacado) " +
+                "VALUES (?, ?, 'Prueba de ledger', 10.00, ?, 1, 1, false)", id, "Ledger " + id, stock);
+        return id;
+    }
+
+    private void editarStock(Long id, int stock) {
+        CompletableFuture.runAsync(() -> {
+            jdbcTemplate.update("UPDATE Products SET stock = ? WHERE id = ?", stock, id);
+            ProductEntity producto = productRepository.findById(id).orElseThrow();
+            eventPublisher.publishEvent(new ProductChangedEvent(id, producto, ProductChangedEvent.Tipo.ACTUALIZADO,
+                    producto.getCategoria().getId()));
+        }).join();
+    }
+
+    private int stockEnBase(Long id) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM Products WHERE id = ?", Integer.class, id);
+    }
+
+    private int pendienteEnJournal(Long id) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(cantidad), 0) FROM stock_journal WHERE id_producto = ?", Integer.class, id);
+    }
+}